@@ -18,16 +18,19 @@
 
 package sk.baka.aedict;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import sk.baka.aedict.dict.DictEntry;
 import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.DictionaryVersions;
 import sk.baka.aedict.dict.DownloaderService;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.kanji.RomanizationEnum;
 import sk.baka.aedict.util.BackgroundService;
 import sk.baka.aedict.util.Iso6393Codes;
@@ -65,14 +68,45 @@ public class AedictApp extends Application implements OnSharedPreferenceChangeLi
 		PreferenceManager.setDefaultValues(this, R.xml.preferences, true);
 		PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
 		apply(new Config(this));
+		try {
+			LuceneSearchRegistry.INSTANCE.updateVersions(getConfig().getCurrentDictVersions());
+		} catch (IOException ex) {
+			Log.e(AedictApp.class.getSimpleName(), "Failed to close an outdated index", ex);
+		}
 		ds = new DownloaderService();
 		bs = new BackgroundService();
+		warm(getConfig().getDictionary());
+	}
+
+	/**
+	 * Warms up the index of given dictionary in the background, so that the
+	 * first search is not slowed down by paging in the index files. Does
+	 * nothing if the dictionary is not downloaded.
+	 * @param dictionary the dictionary to warm up, not null.
+	 */
+	public static void warm(final Dictionary dictionary) {
+		if (!dictionary.getDictionaryLocation().exists()) {
+			return;
+		}
+		getBackground().schedule("warm-" + dictionary, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				final long duration = LuceneSearchRegistry.INSTANCE.warm(dictionary, getConfig().isSorted(), true);
+				Log.i(AedictApp.class.getSimpleName(), "Warmed up " + dictionary + " in " + duration + "ms");
+				return null;
+			}
+		});
 	}
 
 	@Override
 	public void onTerminate() {
 		MiscUtils.closeQuietly(ds);
 		MiscUtils.closeQuietly(bs);
+		try {
+			LuceneSearchRegistry.INSTANCE.invalidateAll();
+		} catch (IOException ex) {
+			Log.e(AedictApp.class.getSimpleName(), "Failed to close the indices", ex);
+		}
 		super.onTerminate();
 	}
 
@@ -388,13 +422,25 @@ public class AedictApp extends Application implements OnSharedPreferenceChangeLi
 		 * @return absolute OS-specific location of the dictionary.
 		 */
 		public String getDictionaryLoc() {
+			return getDictionary().getDictionaryLocation().getAbsolutePath();
+		}
+
+		/**
+		 * Returns currently selected EDICT dictionary. Falls back to the
+		 * default EDICT dictionary if the selected one is not present on the SD
+		 * card.
+		 * 
+		 * @return the dictionary, never null.
+		 */
+		public Dictionary getDictionary() {
 			final Dictionary d = new Dictionary(DictTypeEnum.Edict, getDictionaryName());
-			return d.exists() ? d.getDictionaryLocation().getAbsolutePath() : DictTypeEnum.Edict.getDefaultDictionaryPath();
+			return d.exists() ? d : new Dictionary(DictTypeEnum.Edict, null);
 		}
 		
 		private static final String KEY_CURRENT_DICT_VERSIONS = "currentDictVersions";
-		public synchronized void setCurrentDictVersions(DictionaryVersions dv) {
+		public synchronized void setCurrentDictVersions(DictionaryVersions dv) throws IOException {
 			commit(prefs.edit().putString(KEY_CURRENT_DICT_VERSIONS, dv.toExternal()));
+			LuceneSearchRegistry.INSTANCE.updateVersions(dv);
 		}
 		public synchronized DictionaryVersions getCurrentDictVersions() {
 			return DictionaryVersions.fromExternal(prefs.getString(KEY_CURRENT_DICT_VERSIONS, ""));
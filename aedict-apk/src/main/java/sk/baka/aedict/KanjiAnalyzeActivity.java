@@ -29,6 +29,7 @@ import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.EdictEntry;
 import sk.baka.aedict.dict.KanjidicEntry;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.dict.MatcherEnum;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.kanji.KanjiUtils;
@@ -291,7 +292,7 @@ public class KanjiAnalyzeActivity extends ListActivity {
 
 		private List<DictEntry> analyzeByWords(final String sentence) throws IOException {
 			final List<DictEntry> result = new ArrayList<DictEntry>();
-			final LuceneSearch lsEdict = new LuceneSearch(DictTypeEnum.Edict, AedictApp.getConfig().getDictionaryLoc(), AedictApp.getConfig().isSorted());
+			final LuceneSearch lsEdict = LuceneSearchRegistry.INSTANCE.open(AedictApp.getConfig().getDictionary(), AedictApp.getConfig().isSorted());
 			try {
 				final String[] words = getWords(sentence);
 				final int progressMax = getNumberOfCharacters(words);
@@ -364,11 +365,11 @@ public class KanjiAnalyzeActivity extends ListActivity {
 
 		private List<DictEntry> analyzeByCharacters(final String word) throws IOException {
 			final List<DictEntry> result = new ArrayList<DictEntry>(word.length());
-			final LuceneSearch lsEdict = new LuceneSearch(DictTypeEnum.Edict, AedictApp.getConfig().getDictionaryLoc(), AedictApp.getConfig().isSorted());
+			final LuceneSearch lsEdict = LuceneSearchRegistry.INSTANCE.open(AedictApp.getConfig().getDictionary(), AedictApp.getConfig().isSorted());
 			try {
 				LuceneSearch lsKanjidic = null;
 				if (AedictApp.getDownloader().isComplete(DictTypeEnum.Kanjidic)) {
-					lsKanjidic = new LuceneSearch(DictTypeEnum.Kanjidic, null, AedictApp.getConfig().isSorted());
+					lsKanjidic = LuceneSearchRegistry.INSTANCE.open(new Dictionary(DictTypeEnum.Kanjidic, null), AedictApp.getConfig().isSorted());
 				}
 				try {
 					final String w = MiscUtils.removeWhitespaces(word);
@@ -30,6 +30,7 @@ import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.KanjidicEntry;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.kanji.Radicals;
 import sk.baka.autils.AbstractTask;
@@ -252,7 +253,7 @@ public class KanjiSearchRadicalActivity extends AbstractActivity {
 			final Set<Character> matches = Radicals.getKanjisWithRadicals(((String) params[0]).toCharArray());
 			final List<DictEntry> entries = new ArrayList<DictEntry>();
 			// filter the matches based on stroke count
-			final LuceneSearch ls = new LuceneSearch(DictTypeEnum.Kanjidic, null, AedictApp.getConfig().isSorted());
+			final LuceneSearch ls = LuceneSearchRegistry.INSTANCE.open(new Dictionary(DictTypeEnum.Kanjidic, null), AedictApp.getConfig().isSorted());
 			try {
 				for (final Iterator<Character> kanjis = matches.iterator(); kanjis.hasNext();) {
 					final char kanji = kanjis.next();
@@ -20,15 +20,20 @@ package sk.baka.aedict;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import sk.baka.aedict.AedictApp.Config;
+import sk.baka.aedict.dict.CancelToken;
 import sk.baka.aedict.dict.DictEntry;
 import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.Edict;
 import sk.baka.aedict.dict.EdictEntry;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.dict.MatcherEnum;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.dict.TanakaDictEntry;
@@ -312,10 +317,21 @@ public class ResultActivity extends ListActivity {
 		@Override
 		public List<DictEntry> impl(SearchQuery... params) throws Exception {
 			final List<DictEntry> result = new ArrayList<DictEntry>();
-			final LuceneSearch lucene = new LuceneSearch(params[0].dictType, params[0].dictType == DictTypeEnum.Edict ? AedictApp.getConfig().getDictionaryLoc() : null, AedictApp.getConfig().isSorted());
+			final LuceneSearch lucene = LuceneSearchRegistry.INSTANCE.open(params[0].dictType == DictTypeEnum.Edict ? AedictApp.getConfig().getDictionary() : new Dictionary(params[0].dictType, null), AedictApp.getConfig().isSorted());
 			try {
-				for (final SearchQuery query : params) {
-					result.addAll(lucene.search(query));
+				if (params.length == 1) {
+					// terminate the search as soon as the user leaves the activity
+					result.addAll(lucene.search(params[0], 100, new CancelToken() {
+
+						@Override
+						public boolean isCancelled() {
+							return SearchTask.this.isCancelled();
+						}
+					}, 0, TimeUnit.MILLISECONDS).entries);
+				} else {
+					for (final List<DictEntry> r : lucene.searchBatch(Arrays.asList(params), 100)) {
+						result.addAll(r);
+					}
 				}
 			} finally {
 				MiscUtils.closeQuietly(lucene);
@@ -18,12 +18,13 @@
 package sk.baka.aedict;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import sk.baka.aedict.dict.DictEntry;
-import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.Ranking;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.kanji.RomanizationEnum;
 import sk.baka.aedict.kanji.VerbDeinflection;
@@ -65,10 +66,12 @@ public class SearchProvider extends ContentProvider {
 	public static List<DictEntry> searchForQuery(final String query) {
 		final List<DictEntry> entries = new ArrayList<DictEntry>();
 		try {
-			final LuceneSearch lucene = new LuceneSearch(DictTypeEnum.Edict, AedictApp.getConfig().getDictionaryLoc(), AedictApp.getConfig().isSorted());
+			final LuceneSearch lucene = LuceneSearchRegistry.INSTANCE.open(AedictApp.getConfig().getDictionary(), AedictApp.getConfig().isSorted());
 			try {
-				entries.addAll(lucene.search(VerbDeinflection.searchJpDeinflected(query, AedictApp.getConfig().getRomanization()).query));
-				entries.addAll(lucene.search(SearchQuery.searchEnEdict(query, true)));
+				final List<SearchQuery> queries = Arrays.asList(VerbDeinflection.searchJpDeinflected(query, AedictApp.getConfig().getRomanization()).query, SearchQuery.searchEnEdict(query, true));
+				for (final List<DictEntry> r : lucene.searchBatch(queries, 100)) {
+					entries.addAll(r);
+				}
 			} finally {
 				MiscUtils.closeQuietly(lucene);
 			}
@@ -77,7 +80,7 @@ public class SearchProvider extends ContentProvider {
 			entries.add(DictEntry.newErrorMsg(ex));
 		}
 		if (AedictApp.getConfig().isSorted()) {
-			Collections.sort(entries);
+			Ranking.sort(entries);
 		}
 		return entries;
 	}
@@ -27,6 +27,7 @@ import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.EdictEntry;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.dict.MatcherEnum;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.dict.TanakaDictEntry;
@@ -191,7 +192,7 @@ public class TanakaAnalyzeActivity extends ListActivity {
 		public List<DictEntry> impl(TanakaDictEntry... params) throws Exception {
 			publish(new Progress(AedictApp.getStr(R.string.analyzing), 0, 100));
 			final List<DictEntry> result = new ArrayList<DictEntry>();
-			final LuceneSearch lsEdict = new LuceneSearch(DictTypeEnum.Edict, AedictApp.getConfig().getDictionaryLoc(), true);
+			final LuceneSearch lsEdict = LuceneSearchRegistry.INSTANCE.open(AedictApp.getConfig().getDictionary(), true);
 			try {
 				final TanakaDictEntry e = params[0];
 				for (int i = 0; i < e.wordList.size(); i++) {
@@ -150,6 +150,7 @@ public class DownloaderService implements Closeable {
 		public void onPositiveClick(DialogActivity activity) {
 			for(final Dictionary dict: dictionariesToUpdate) {
 				try {
+					LuceneSearchRegistry.INSTANCE.invalidate(dict);
 					dict.delete();
 				} catch (IOException e) {
 					throw new RuntimeException(e);
@@ -415,11 +416,14 @@ public class DownloaderService implements Closeable {
 				}
 				zip.closeEntry();
 			}
+			// the index files changed, make sure that the new ones are used.
+			LuceneSearchRegistry.INSTANCE.invalidate(dictionary);
 			// update the version
 			final String version = dictionary.downloadVersion();
 			final DictionaryVersions versions = AedictApp.getConfig().getCurrentDictVersions();
 			versions.versions.put(dictionary, version);
 			AedictApp.getConfig().setCurrentDictVersions(versions);
+			AedictApp.warm(dictionary);
 		}
 	}
 
@@ -34,6 +34,7 @@ import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.Dictionary;
 import sk.baka.aedict.dict.KanjidicEntry;
 import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
 import sk.baka.aedict.dict.SearchQuery;
 import sk.baka.aedict.kanji.KanjiUtils;
 import sk.baka.aedict.kanji.KanjiUtils.KanjiQuiz;
@@ -109,7 +110,7 @@ public class QuizLaunchActivity extends Activity {
 			}
 			final List<KanjidicEntry> questions = new ArrayList<KanjidicEntry>();
 			final Random r = new Random();
-			final LuceneSearch search = new LuceneSearch(DictTypeEnum.Kanjidic, null, true);
+			final LuceneSearch search = LuceneSearchRegistry.INSTANCE.open(new Dictionary(DictTypeEnum.Kanjidic, null), true);
 			try {
 				for (int i = 0; i < QUIZ_QUESTION_COUNT; i++) {
 					publish(new Progress(null,i,QUIZ_QUESTION_COUNT));
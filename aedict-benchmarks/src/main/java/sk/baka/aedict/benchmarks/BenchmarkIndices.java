@@ -0,0 +1,133 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.indexer.FileTypeEnum;
+import sk.baka.aedict.indexer.Main;
+import sk.baka.aedict.util.IOExceptionWithCause;
+
+/**
+ * Builds the Lucene indices searched by the benchmarks. The indices are
+ * produced by the indexer {@link Main} out of the sample dictionaries checked
+ * in the indexer module, therefore no network access is needed. An index is
+ * built only once and is reused by subsequent runs; delete the
+ * <code>target/bench-index</code> directory to rebuild the indices.
+ * <p/>
+ * The location of the sample dictionaries may be overridden by the
+ * <code>aedict.samples</code> system property.
+ *
+ * @author Martin Vysny
+ */
+public final class BenchmarkIndices {
+
+    private BenchmarkIndices() {
+        throw new AssertionError();
+    }
+    /**
+     * The indexer always writes the index here, relative to the current
+     * directory.
+     */
+    private static final File INDEXER_OUTPUT = new File("target/index");
+    private static final File INDICES = new File("target/bench-index");
+
+    private static String getSamplesDir() {
+        return System.getProperty("aedict.samples", "../aedict-indexer/src/test/resources");
+    }
+
+    /**
+     * Returns a sample dictionary file.
+     *
+     * @param name
+     *            the file name
+     * @return the file, never null.
+     * @throws IOException
+     *             if the file does not exist.
+     */
+    static File getSample(final String name) throws IOException {
+        final File result = new File(getSamplesDir(), name);
+        if (!result.exists()) {
+            throw new IOException("The sample dictionary " + result.getAbsolutePath() + " does not exist. Run the benchmarks from the aedict-benchmarks directory or set the aedict.samples system property");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of given dictionary type, building it if necessary.
+     *
+     * @param dictType
+     *            the dictionary type, one of Edict, Kanjidic and Tanaka. There
+     *            is no Tatoeba sample.
+     * @return the index directory, never null.
+     * @throws IOException
+     *             if the index cannot be built.
+     */
+    public static synchronized File get(final DictTypeEnum dictType) throws IOException {
+        final File index = new File(INDICES, dictType.name());
+        if (index.isDirectory()) {
+            return index;
+        }
+        final String sample;
+        final String option;
+        final FileTypeEnum fileType;
+        switch (dictType) {
+            case Edict:
+                sample = "edict.gz";
+                option = null;
+                fileType = FileTypeEnum.Edict;
+                break;
+            case Kanjidic:
+                sample = "kanjidic.gz";
+                option = "-k";
+                fileType = FileTypeEnum.Kanjidic;
+                break;
+            case Tanaka:
+                sample = "examples.gz";
+                option = "-t";
+                fileType = FileTypeEnum.Tanaka;
+                break;
+            default:
+                throw new IllegalArgumentException("No sample dictionary for " + dictType);
+        }
+        final String file = getSample(sample).getAbsolutePath();
+        if (System.getProperty("edict.gz") == null) {
+            // the Tanaka parser reads the kana readings from the EDICT sample
+            System.setProperty("edict.gz", getSamplesDir());
+        }
+        try {
+            // Main.main() would terminate the JVM on failure
+            new Main(option == null ? new String[]{"-f", file, "-g"} : new String[]{"-f", file, "-g", option}).run();
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOExceptionWithCause("Failed to index " + file, ex);
+        }
+        if (!INDICES.isDirectory() && !INDICES.mkdirs()) {
+            throw new IOException("Failed to create " + INDICES.getAbsolutePath());
+        }
+        FileUtils.moveDirectory(INDEXER_OUTPUT, index);
+        // the zipped index is not needed
+        new File(fileType.getTargetFileName(null)).delete();
+        return index;
+    }
+}
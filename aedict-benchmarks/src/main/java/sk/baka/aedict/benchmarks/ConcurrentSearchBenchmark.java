@@ -0,0 +1,118 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+
+/**
+ * Measures the throughput of a single {@link LuceneSearch} instance shared by
+ * multiple threads. The benchmarks differ only in the number of threads; the
+ * ratio of their throughputs shows how well the searches scale. The result
+ * equality is verified by the LuceneSearchConcurrencyTest of the indexer.
+ *
+ * @author Martin Vysny
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentSearchBenchmark {
+
+    private LuceneSearch search;
+    private SearchQuery[] queries;
+
+    /**
+     * The position of a thread in the query list.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next = 0;
+
+        SearchQuery next(final SearchQuery[] queries) {
+            final SearchQuery q = queries[next];
+            next = (next + 1) % queries.length;
+            return q;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final List<SearchQuery> q = new ArrayList<SearchQuery>();
+        for (final String en : SearchBenchmark.getWords(DictTypeEnum.Edict, false)) {
+            q.add(SearchQuery.searchEnEdict(en, true));
+            q.add(SearchQuery.searchEnEdict(en, false));
+        }
+        for (final MatcherEnum m : MatcherEnum.values()) {
+            q.add(SearchQuery.searchJpEdict("はは", m));
+            q.add(SearchQuery.searchJpEdict("母", m));
+            q.add(SearchQuery.searchJpRomaji("kyou", RomanizationEnum.Hepburn, m));
+        }
+        queries = q.toArray(new SearchQuery[q.size()]);
+        search = new LuceneSearch(DictTypeEnum.Edict, BenchmarkIndices.get(DictTypeEnum.Edict).getAbsolutePath(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        search.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<DictEntry> threads1(final Cursor cursor) throws IOException {
+        return search.search(cursor.next(queries), 100);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public List<DictEntry> threads2(final Cursor cursor) throws IOException {
+        return search.search(cursor.next(queries), 100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<DictEntry> threads4(final Cursor cursor) throws IOException {
+        return search.search(cursor.next(queries), 100);
+    }
+}
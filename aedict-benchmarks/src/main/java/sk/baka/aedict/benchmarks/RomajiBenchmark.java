@@ -0,0 +1,107 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+
+/**
+ * Compares the exact romaji lookup in the romaji key field of the EDICT index
+ * with the conversion path, where the romaji is converted to katakana and
+ * hiragana and the kana is looked up. The query is created in the benchmark
+ * method, therefore the cost of the conversion is included.
+ *
+ * @author Martin Vysny
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RomajiBenchmark {
+
+    /**
+     * The lookup: <code>romaji</code> uses the romaji key field,
+     * <code>conversion</code> ignores it and searches the converted kana.
+     */
+    @Param({"romaji", "conversion"})
+    public String lookup;
+    /**
+     * Romaji words present in the sample EDICT, in the Hepburn romanization.
+     */
+    private static final String[] WORDS = {"haha", "kyou", "shinbun", "jishin", "chotto", "gakkou", "konnichiha"};
+    private LuceneSearch search;
+    private boolean useRomaji;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        useRomaji = "romaji".equals(lookup);
+        search = new LuceneSearch(DictTypeEnum.Edict, BenchmarkIndices.get(DictTypeEnum.Edict).getAbsolutePath(), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        search.close();
+    }
+
+    private List<DictEntry> searchNext() throws IOException {
+        final String word = WORDS[next];
+        next = (next + 1) % WORDS.length;
+        final SearchQuery q = SearchQuery.searchJpRomaji(word, RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        if (!useRomaji) {
+            q.romaji = null;
+        }
+        return search.search(q, 100);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<DictEntry> throughput() throws IOException {
+        return searchNext();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<DictEntry> latency() throws IOException {
+        return searchNext();
+    }
+}
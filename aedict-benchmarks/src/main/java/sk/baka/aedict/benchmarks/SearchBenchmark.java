@@ -0,0 +1,134 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+
+/**
+ * Benchmarks {@link LuceneSearch#search(SearchQuery, int)} for every valid
+ * combination of the dictionary type, the matcher and the query language.
+ * The throughput is reported in ops/s, the latency percentiles (including
+ * p99) in microseconds; run with the GC profiler (see
+ * {@link BenchmarkRunner}) to get the allocation rate.
+ * <p/>
+ * Each benchmark iteration cycles through several query words, so that a
+ * single hot term does not dominate. The search object is not leased from
+ * the registry, therefore the result cache is not involved.
+ *
+ * @author Martin Vysny
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    /**
+     * The scenario: DictType/Matcher/language. Only the combinations allowed
+     * by {@link SearchQuery#validate()} are listed. KANJIDIC is searched by
+     * the kanji only; Tatoeba is missing as there is no sample file.
+     */
+    @Param({"Edict/Exact/jp", "Edict/StartsWith/jp", "Edict/EndsWith/jp", "Edict/Substring/jp",
+        "Edict/Exact/en", "Edict/Substring/en",
+        "Kanjidic/Exact/jp",
+        "Tanaka/Substring/jp", "Tanaka/Substring/en"})
+    public String scenario;
+    private LuceneSearch search;
+    private SearchQuery[] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final String[] s = scenario.split("/");
+        final DictTypeEnum dictType = DictTypeEnum.valueOf(s[0]);
+        final MatcherEnum matcher = MatcherEnum.valueOf(s[1]);
+        final boolean isJapanese = "jp".equals(s[2]);
+        final String[] words = getWords(dictType, isJapanese);
+        queries = new SearchQuery[words.length];
+        for (int i = 0; i < words.length; i++) {
+            final SearchQuery q = new SearchQuery(dictType);
+            q.query = new String[]{words[i]};
+            q.isJapanese = isJapanese;
+            q.matcher = matcher;
+            q.validate();
+            queries[i] = q;
+        }
+        search = new LuceneSearch(dictType, BenchmarkIndices.get(dictType).getAbsolutePath(), true);
+    }
+
+    /**
+     * Returns words present in the sample dictionaries.
+     */
+    static String[] getWords(final DictTypeEnum dictType, final boolean isJapanese) {
+        switch (dictType) {
+            case Edict:
+                return isJapanese ? new String[]{"はは", "母", "母親", "きょう", "ははおや"} : new String[]{"mother", "mom", "today", "house", "water"};
+            case Kanjidic:
+                return new String[]{"母", "日", "本", "今", "水"};
+            default:
+                return isJapanese ? new String[]{"きれい", "母", "生徒会長", "先生", "日本"} : new String[]{"beautiful", "mother", "teacher", "school", "japan"};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        search.close();
+    }
+
+    private List<DictEntry> searchNext() throws IOException {
+        final SearchQuery q = queries[next];
+        next = (next + 1) % queries.length;
+        return search.search(q, 100);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<DictEntry> throughput() throws IOException {
+        return searchNext();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<DictEntry> latency() throws IOException {
+        return searchNext();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ReaderUtil;
+
+/**
+ * Performs multiple searches in a single pass over the index. Every
+ * {@link SearchQuery} produces a list of Lucene queries which are executed in
+ * order (e.g. first the common EDICT entries, then the rest), see
+ * {@link DictTypeEnum#getLuceneQuery(SearchQuery, Set)}. The queries at the
+ * same position are executed together: the matching documents of all queries
+ * are merged in the index order and every document is loaded and parsed only
+ * once, regardless of the number of queries it matches.
+ * <p/>
+ * The result for each query is identical to the result of
+ * {@link LuceneSearch#search(SearchQuery, int)}.
+ *
+ * @author Martin Vysny
+ */
+final class BatchSearch {
+
+    private final DictTypeEnum dictType;
+    private final Searcher searcher;
+    private final List<SearchQuery> queries;
+    private final int maxResults;
+    private final Query[][] luceneQueries;
+    private final boolean[] isExact;
+    private final List<List<DictEntry>> result;
+    private final List<IndexReader> segments = new ArrayList<IndexReader>();
+
+    BatchSearch(final DictTypeEnum dictType, final Searcher searcher, final IndexReader reader, final Set<String> fields, final List<SearchQuery> queries, final int maxResults) {
+        this.dictType = dictType;
+        this.searcher = searcher;
+        this.queries = queries;
+        this.maxResults = maxResults;
+        final int count = queries.size();
+        luceneQueries = new Query[count][];
+        isExact = new boolean[count];
+        result = new ArrayList<List<DictEntry>>(count);
+        for (int i = 0; i < count; i++) {
+            final SearchQuery q = queries.get(i);
+            q.validate();
+            luceneQueries[i] = dictType.getLuceneQuery(q, fields);
+            isExact[i] = dictType.isExact(q, fields);
+            result.add(new ArrayList<DictEntry>());
+        }
+        ReaderUtil.gatherSubReaders(segments, reader);
+    }
+
+    /**
+     * Performs the search.
+     *
+     * @return a result list for each query, in the order of the queries.
+     * @throws IOException
+     *             on I/O error.
+     */
+    List<List<DictEntry>> search() throws IOException {
+        for (int level = 0;; level++) {
+            // collect all queries at this level which still need results
+            final List<Integer> active = new ArrayList<Integer>();
+            boolean hasMoreLevels = false;
+            for (int i = 0; i < luceneQueries.length; i++) {
+                if (level >= luceneQueries[i].length) {
+                    continue;
+                }
+                hasMoreLevels = true;
+                if (luceneQueries[i][level] != null && !isFull(i)) {
+                    active.add(i);
+                }
+            }
+            if (!hasMoreLevels) {
+                break;
+            }
+            if (active.isEmpty()) {
+                continue;
+            }
+            final int[] queryIndex = new int[active.size()];
+            final Weight[] weights = new Weight[active.size()];
+            for (int i = 0; i < queryIndex.length; i++) {
+                queryIndex[i] = active.get(i);
+                weights[i] = luceneQueries[queryIndex[i]][level].weight(searcher);
+            }
+            for (final IndexReader segment : segments) {
+                if (!searchSegment(segment, queryIndex, weights)) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isFull(final int query) {
+        return result.get(query).size() >= maxResults;
+    }
+
+    /**
+     * Merges the matches of all queries in given segment.
+     *
+     * @return false if all queries are full, true otherwise.
+     */
+    private boolean searchSegment(final IndexReader segment, final int[] queryIndex, final Weight[] weights) throws IOException {
+        final Scorer[] scorers = new Scorer[weights.length];
+        final int[] docs = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            scorers[i] = isFull(queryIndex[i]) ? null : weights[i].scorer(segment, true, false);
+            docs[i] = scorers[i] == null ? DocIdSetIterator.NO_MORE_DOCS : scorers[i].nextDoc();
+        }
+        // maps language code to the entry parsed from the current document
+        final Map<String, DictEntry> parsed = new HashMap<String, DictEntry>();
+        while (true) {
+            // find the lowest document matched by a query which still needs
+            // results
+            int doc = DocIdSetIterator.NO_MORE_DOCS;
+            boolean hasRoom = false;
+            for (int i = 0; i < docs.length; i++) {
+                if (docs[i] != DocIdSetIterator.NO_MORE_DOCS && isFull(queryIndex[i])) {
+                    // no need to search further
+                    docs[i] = DocIdSetIterator.NO_MORE_DOCS;
+                }
+                if (docs[i] < doc) {
+                    doc = docs[i];
+                }
+                hasRoom |= !isFull(queryIndex[i]);
+            }
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                return hasRoom;
+            }
+            parsed.clear();
+            for (int i = 0; i < docs.length; i++) {
+                if (docs[i] != doc) {
+                    continue;
+                }
+                final SearchQuery q = queries.get(queryIndex[i]);
+                DictEntry entry = parsed.get(q.langCode);
+                if (entry == null) {
+                    entry = dictType.tryGetEntry(segment.document(doc, dictType.getFieldSelector(q.langCode)), q.langCode);
+                    parsed.put(q.langCode, entry);
+                }
+                if (isExact[queryIndex[i]] || dictType.matches(entry, q)) {
+                    result.get(queryIndex[i]).add(entry);
+                }
+                docs[i] = scorers[i].nextDoc();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+/**
+ * Cancels a running search, see
+ * {@link LuceneSearch#search(SearchQuery, int, CancelToken, long, java.util.concurrent.TimeUnit)}.
+ * The search polls the token while it collects the matched documents and
+ * terminates as soon as the token is cancelled; the entries found so far are
+ * returned as a {@link SearchResult#truncated truncated} result.
+ * <p/>
+ * The cancellation is cooperative: the searching thread is never
+ * interrupted, as an interrupt closes the NIO channels of the index files.
+ * The {@link #isCancelled()} method may be overridden to tie the token to
+ * another cancellation mechanism, e.g. to an <code>AsyncTask</code>.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public class CancelToken {
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Cancels all searches using this token. A token cannot be reset.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the token has been cancelled. Called frequently by the
+     * search, therefore the implementation must be cheap.
+     *
+     * @return true if the search should be terminated.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
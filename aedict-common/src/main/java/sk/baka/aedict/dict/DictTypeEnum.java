@@ -19,14 +19,27 @@ package sk.baka.aedict.dict;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.DataFormatException;
-import org.apache.lucene.document.CompressionTools;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.SetBasedFieldSelector;
+import org.apache.lucene.search.Query;
+import sk.baka.aedict.kanji.KanjiUtils;
+import sk.baka.aedict.kanji.RomanizationEnum;
+import sk.baka.aedict.util.InflaterPool;
 import sk.baka.aedict.util.Iso6393Codes;
-import sk.baka.autils.ListBuilder;
 import sk.baka.autils.MiscUtils;
 
 /**
@@ -39,7 +52,7 @@ public enum DictTypeEnum {
     /**
      * The EDICT dictionary.
      */
-    Edict {
+    Edict("contents") {
 
         private String getJpSearchTerm(String term, MatcherEnum matcher) {
             switch(matcher){
@@ -52,30 +65,139 @@ public enum DictTypeEnum {
         }
 
         @Override
-        public String[] getLuceneQuery(SearchQuery query) {
-            final ListBuilder sb = new ListBuilder(" OR ");
-            for (final String q : query.query) {
-                if (query.isJapanese) {
-                    if (q.contains(" AND ")) {
-                        final ListBuilder lb = new ListBuilder(" AND ");
-                        for (final String term : q.split(" AND ")) {
-                            lb.add("jp:" + getJpSearchTerm(term.trim(), query.matcher));
+        public Query[] getLuceneQuery(SearchQuery query, Set<String> fields) {
+            final List<Query> sb = new ArrayList<Query>();
+            // the exact queries use the keyword fields: the headwords or the
+            // English glosses
+            final boolean isExact = isExact(query, fields);
+            final String[] romaji = getRomajiKeys(query, fields);
+            if (romaji != null) {
+                // a single term lookup, no kana conversion is necessary
+                final Query[] lb = new Query[romaji.length];
+                for (int i = 0; i < romaji.length; i++) {
+                    lb[i] = QueryUtils.term("romaji", romaji[i]);
+                }
+                sb.add(QueryUtils.and(lb));
+            } else {
+                // a single normalized term per token instead of the
+                // katakana/hiragana pair
+                final SearchQuery kana = getKanaQuery(query, fields);
+                for (final String q : (kana != null ? kana : query).query) {
+                    final String[] terms = q.split("\\s+AND\\s+");
+                    final Query[] lb = new Query[terms.length];
+                    for (int i = 0; i < terms.length; i++) {
+                        if (query.isJapanese && query.matcher == MatcherEnum.Substring) {
+                            lb[i] = substringQuery(kana != null ? "jp-kana" : "jp", terms[i], fields);
+                        } else if (query.isJapanese && isExact) {
+                            lb[i] = getHeadwordQuery(kana != null ? "headword-kana" : "headword", terms[i].trim().toLowerCase(), query.matcher);
+                        } else if (query.isJapanese) {
+                            lb[i] = QueryUtils.analyzed("jp", getJpSearchTerm(terms[i].trim(), query.matcher));
+                        } else if (isExact) {
+                            lb[i] = QueryUtils.term("gloss", EdictEntry.toGloss(terms[i]));
+                        } else {
+                            lb[i] = QueryUtils.analyzed("contents", terms[i].trim());
                         }
-                        sb.add("(" + lb + ")");
-                    } else {
-                        sb.add("jp:\"" + getJpSearchTerm(q.trim(), query.matcher) + "\"");
-                    }
-                } else {
-                    if (q.contains(" AND ")) {
-                        sb.add("(" + q.trim() + ")");
-                    } else {
-                        sb.add("\"" + q.trim() + "\"");
                     }
+                    sb.add(QueryUtils.and(lb));
                 }
             }
+            final Query q = QueryUtils.or(sb.toArray(new Query[sb.size()]));
+            if (isRanked(fields)) {
+                // the documents are already ordered by their rank, common
+                // words first
+                return new Query[]{q};
+            }
             // first the common words are returned, then return all the rest
             // fixes http://code.google.com/p/aedict/issues/detail?id=47
-            return new String[]{"(" + sb + ") AND common:t", "(" + sb + ") AND common:f"};
+            return new Query[]{QueryUtils.and(q, QueryUtils.term("common", "t")), QueryUtils.and(q, QueryUtils.term("common", "f"))};
+        }
+
+        @Override
+        public boolean isRanked(Set<String> fields) {
+            return fields.contains("rank");
+        }
+
+        /**
+         * Matches whole kanji or reading values, using the keyword fields.
+         */
+        private Query getHeadwordQuery(String field, String term, MatcherEnum matcher) {
+            switch (matcher) {
+                case Exact:
+                    return QueryUtils.term(field, term);
+                case StartsWith:
+                    return QueryUtils.prefix(field, term);
+                case EndsWith:
+                    return QueryUtils.prefix(field + "-rev", QueryUtils.reverse(term));
+            }
+            throw new RuntimeException("Unsupported matcher: " + matcher);
+        }
+
+        /**
+         * Returns the {@link RomanizationEnum#toRomajiKey(String) romaji keys}
+         * of the terms of an exact romaji query, matched by the
+         * <code>romaji</code> field.
+         *
+         * @return the keys, or null if the query is not an exact romaji query
+         *         or the index lacks the romaji field.
+         */
+        private String[] getRomajiKeys(SearchQuery query, Set<String> fields) {
+            if (!query.isJapanese || query.romaji == null || query.matcher != MatcherEnum.Exact || !fields.contains("romaji")) {
+                return null;
+            }
+            final String[] terms = query.romaji.split("\\s+AND\\s+");
+            final String[] result = new String[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                final String term = terms[i].trim();
+                if (!RomanizationEnum.isRomaji(term)) {
+                    // kana or kanji, the query strings must be used
+                    return null;
+                }
+                result[i] = RomanizationEnum.toRomajiKey(term);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the kana-normalized query, matched by the
+         * <code>jp-kana-bigram</code> or <code>headword-kana</code> fields.
+         */
+        @Override
+        SearchQuery getKanaQuery(SearchQuery query, Set<String> fields) {
+            if (query.matcher == MatcherEnum.Substring) {
+                return kanaSubstringQuery("jp", query, fields);
+            }
+            return fields.contains("headword-kana-rev") ? kanaQuery("headword-kana", query, fields) : null;
+        }
+
+        @Override
+        public boolean isExact(SearchQuery query, Set<String> fields) {
+            if (getRomajiKeys(query, fields) != null) {
+                return true;
+            }
+            if (query.isJapanese && getKanaQuery(query, fields) != null) {
+                return true;
+            }
+            if (query.isJapanese) {
+                if (query.matcher == MatcherEnum.Substring) {
+                    return isBigramExact("jp", query, fields);
+                }
+                // the keyword fields match the whole kanji/reading values
+                // exactly
+                return fields.contains("headword") && fields.contains("headword-rev");
+            }
+            // the exact English matching is handled by the gloss field, if
+            // present in the index.
+            if (query.matcher != MatcherEnum.Exact || !fields.contains("gloss")) {
+                return false;
+            }
+            for (final String q : query.query) {
+                for (final String term : q.split("\\s+AND\\s+")) {
+                    if (EdictEntry.toGloss(term) == null) {
+                        return false;
+                    }
+                }
+            }
+            return true;
         }
 
         @Override
@@ -116,7 +238,7 @@ public enum DictTypeEnum {
             final String _line = entry.english.toLowerCase();
             int indexOfQuery = _line.indexOf(query, lastIndex);
             while (indexOfQuery >= 0) {
-                if (!isWordPart(skipWhitespaces(_line, indexOfQuery - 1, -1)) && !isWordPart(skipWhitespaces(_line, indexOfQuery + query.length(), 1))) {
+                if (!EdictEntry.isWordPart(skipWhitespaces(_line, indexOfQuery - 1, -1)) && !EdictEntry.isWordPart(skipWhitespaces(_line, indexOfQuery + query.length(), 1))) {
                     return true;
                 }
                 lastIndex = indexOfQuery + 1;
@@ -125,10 +247,6 @@ public enum DictTypeEnum {
             return false;
         }
 
-        private boolean isWordPart(final char c) {
-            return c == '-' || c == '\'' || c == '.' || c == ',' || Character.isLetter(c);
-        }
-
         private char skipWhitespaces(final String line, final int charIndex, final int direction) {
             for (int i = charIndex; i >= 0 && i < line.length(); i += direction) {
                 final char c = line.charAt(i);
@@ -142,39 +260,40 @@ public enum DictTypeEnum {
     /**
      * The KanjiDic dictionary.
      */
-    Kanjidic {
+    Kanjidic("kanji", "reading", "namereading", "radical", "strokes", "grade", "skip", "english") {
 
         @Override
-        public String[] getLuceneQuery(SearchQuery q) {
+        public Query[] getLuceneQuery(SearchQuery q, Set<String> fields) {
             // q.query can be null in case we are performing e.g. a pure SKIP
             // lookup (see the SkipActivity for details)
-            final ListBuilder qb = new ListBuilder(" AND ");
+            final List<Query> qb = new ArrayList<Query>();
             if (q.query != null) {
                 if (q.query.length != 1) {
                     throw new IllegalStateException("Kanjidic search requires a single kanji character search");
                 }
-                qb.add("kanji:\"" + q.query[0].trim() + "\"");
+                qb.add(QueryUtils.term("kanji", q.query[0].trim()));
             }
             if (q.strokeCount != null) {
                 final int plusMinus = q.strokesPlusMinus == null ? 0 : q.strokesPlusMinus;
                 if ((plusMinus > 3) || (plusMinus < 0)) {
                     throw new IllegalStateException("Invalid value: " + q.strokesPlusMinus);
                 }
-                final String sc;
-                if (plusMinus > 0) {
-                    sc = "[" + (q.strokeCount - plusMinus) + " TO " + (q.strokeCount + plusMinus) +"]";
-                } else {
-                    sc = String.valueOf(q.strokeCount);
+                // the strokes field is not numeric - a lexicographic range
+                // would not work (e.g. "9" is greater than "10"). List all
+                // allowed stroke counts instead.
+                final List<Query> sc = new ArrayList<Query>();
+                for (int strokes = q.strokeCount - plusMinus; strokes <= q.strokeCount + plusMinus; strokes++) {
+                    sc.add(QueryUtils.term("strokes", String.valueOf(strokes)));
                 }
-                qb.add("(strokes:" + sc + ")");
+                qb.add(QueryUtils.or(sc.toArray(new Query[sc.size()])));
             }
             if (q.skip != null) {
-                qb.add("skip:" + q.skip);
+                qb.add(QueryUtils.term("skip", q.skip));
             }
             if (q.radical != null) {
-                qb.add("radical:" + q.radical);
+                qb.add(QueryUtils.term("radical", String.valueOf(q.radical)));
             }
-            return new String[]{qb.toString()};
+            return new Query[]{QueryUtils.and(qb.toArray(new Query[qb.size()]))};
         }
 
         @Override
@@ -202,8 +321,8 @@ public enum DictTypeEnum {
             // http://www.csse.monash.edu.au/~jwb/kanjidic.html
             try {
                 final char kanji = doc.get("kanji").charAt(0);
-                String reading = CompressionTools.decompressString(doc.getBinaryValue("reading"));
-                final String namereading = CompressionTools.decompressString(doc.getBinaryValue("namereading"));
+                String reading = InflaterPool.decompressString(doc.getBinaryValue("reading"));
+                final String namereading = InflaterPool.decompressString(doc.getBinaryValue("namereading"));
                 final int radicalNumber = Integer.parseInt(doc.get("radical"));
                 // the strokes count is a space-separated list of strokes. First
                 // number denotes a correct number of strokes, following numbers
@@ -214,7 +333,7 @@ public enum DictTypeEnum {
                     grade = Integer.parseInt(doc.get("grade"));
                 }
                 final String skip = doc.get("skip");
-                final String english = CompressionTools.decompressString(doc.getBinaryValue("english"));
+                final String english = InflaterPool.decompressString(doc.getBinaryValue("english"));
                 if (namereading.length() != 0) {
                     reading = reading + ", [" + namereading + "]";
                 }
@@ -238,30 +357,40 @@ public enum DictTypeEnum {
     /**
      * The Tanaka Corpus containing example sentences.
      */
-    Tanaka {
+    Tanaka("japanese", "english", "kana", "jp-deinflected") {
 
         @Override
-        public String[] getLuceneQuery(SearchQuery query) {
-            final ListBuilder result = new ListBuilder(" OR ");
-            for (final String q : query.trim().query) {
-		final String[] qs = q.split("\\s+AND\\s+");
-                if (query.isJapanese) {
-		    add(result, "japanese", qs);
-		    add(result, "jp-deinflected", qs);
+        public Query[] getLuceneQuery(SearchQuery query, Set<String> fields) {
+            final List<Query> result = new ArrayList<Query>();
+            // the deinflected words are useless when the substring is matched
+            // exactly: the results are not filtered
+            final boolean isExact = isExact(query, fields);
+            final SearchQuery kana = kanaSubstringQuery("japanese", query, fields);
+            for (final String q : (kana != null ? kana : query.trim()).query) {
+                final String[] qs = q.split("\\s+AND\\s+");
+                if (kana != null) {
+                    result.add(andSubstringQuery("japanese-kana", qs, fields));
+                } else if (query.isJapanese) {
+                    result.add(andSubstringQuery("japanese", qs, fields));
+                    if (!isExact) {
+                        result.add(andQuery("jp-deinflected", qs));
+                    }
                 } else {
-		    add(result, "english", qs);
+                    result.add(andQuery("english", qs));
                 }
             }
-            return new String[]{result.toString()};
+            return new Query[]{QueryUtils.or(result.toArray(new Query[result.size()]))};
         }
 
-	private void add(final ListBuilder bu, final String prefix, final String[] andTerms) {
-	    final ListBuilder b = new ListBuilder(" AND ");
-	    for(final String term: andTerms) {
-		b.add(prefix+":\""+term.trim()+"\"");
-	    }
-	    bu.add("("+b.toString()+")");
-	}
+        @Override
+        public boolean isExact(SearchQuery query, Set<String> fields) {
+            return isBigramExact("japanese", query, fields) || kanaSubstringQuery("japanese", query, fields) != null;
+        }
+
+        @Override
+        SearchQuery getKanaQuery(SearchQuery query, Set<String> fields) {
+            return kanaSubstringQuery("japanese", query, fields);
+        }
 
         @Override
         public String getDefaultDictionaryLoc() {
@@ -288,7 +417,7 @@ public enum DictTypeEnum {
             final String english = doc.get("english");
             final byte[] b = doc.getBinaryValue("kana");
             try {
-                final String reading = b == null ? null : CompressionTools.decompressString(b);
+                final String reading = b == null ? null : InflaterPool.decompressString(b);
                 return new TanakaDictEntry(japanese, reading, english, doc.get("jp-deinflected"));
             } catch (DataFormatException ex) {
                 throw new RuntimeException(ex);
@@ -304,30 +433,56 @@ public enum DictTypeEnum {
     /**
      * The Tatoeba project files containing example sentences.
      */
-    Tatoeba {
+    Tatoeba("japanese", "translations", "kana", "jp-deinflected") {
+
+        /**
+         * Maps the language code to a field selector loading the translation
+         * to that language only.
+         */
+        private final ConcurrentMap<String, FieldSelector> selectors = new ConcurrentHashMap<String, FieldSelector>();
 
         @Override
-        public String[] getLuceneQuery(SearchQuery query) {
-            final ListBuilder result = new ListBuilder(" OR ");
-            for (final String q : query.trim().query) {
-		final String[] qs = q.split("\\s+AND\\s+");
-                if (query.isJapanese) {
-		    add(result, "japanese", qs);
-		    add(result, "jp-deinflected", qs);
+        public Query[] getLuceneQuery(SearchQuery query, Set<String> fields) {
+            // newer indices store every language in its own field
+            final boolean perLanguage = fields.contains("langs");
+            final String langCode = getLangCode(query.langCode);
+            final List<Query> result = new ArrayList<Query>();
+            // the deinflected words are useless when the substring is matched
+            // exactly: the results are not filtered
+            final boolean isExact = isExact(query, fields);
+            final SearchQuery kana = kanaSubstringQuery("japanese", query, fields);
+            for (final String q : (kana != null ? kana : query.trim()).query) {
+                final String[] qs = q.split("\\s+AND\\s+");
+                if (kana != null) {
+                    result.add(andSubstringQuery("japanese-kana", qs, fields));
+                } else if (query.isJapanese) {
+                    result.add(andSubstringQuery("japanese", qs, fields));
+                    if (!isExact) {
+                        result.add(andQuery("jp-deinflected", qs));
+                    }
+                } else if (perLanguage) {
+                    result.add(andQuery(getTranslationField(langCode), qs));
+                    if (!Iso6393Codes.LANG_CODE_ENGLISH.equals(langCode)) {
+                        // a sentence without the requested translation is
+                        // shown in English, see getEntry()
+                        result.add(andQuery(getTranslationField(Iso6393Codes.LANG_CODE_ENGLISH), qs));
+                    }
                 } else {
-		    add(result, "translations", qs);
+                    result.add(andQuery("translations", qs));
                 }
             }
-            return new String[]{result.toString()};
+            return new Query[]{QueryUtils.or(result.toArray(new Query[result.size()]))};
         }
 
-	private void add(final ListBuilder bu, final String prefix, final String[] andTerms) {
-	    final ListBuilder b = new ListBuilder(" AND ");
-	    for(final String term: andTerms) {
-		b.add(prefix+":\""+term.trim()+"\"");
-	    }
-	    bu.add("("+b.toString()+")");
-	}
+        @Override
+        public boolean isExact(SearchQuery query, Set<String> fields) {
+            return isBigramExact("japanese", query, fields) || kanaSubstringQuery("japanese", query, fields) != null;
+        }
+
+        @Override
+        SearchQuery getKanaQuery(SearchQuery query, Set<String> fields) {
+            return kanaSubstringQuery("japanese", query, fields);
+        }
 
         @Override
         public String getDefaultDictionaryLoc() {
@@ -348,29 +503,32 @@ public enum DictTypeEnum {
             return 73234781;
         }
 
+        @Override
+        public FieldSelector getFieldSelector(final String langCode) {
+            final String lang = getLangCode(langCode);
+            FieldSelector result = selectors.get(lang);
+            if (result == null) {
+                // the translations field is stored by older indices only
+                result = new SetBasedFieldSelector(new HashSet<String>(Arrays.asList("japanese", "translations", getTranslationField(lang), getTranslationField(Iso6393Codes.LANG_CODE_ENGLISH), "kana", "jp-deinflected")), Collections.<String>emptySet());
+                selectors.put(lang, result);
+            }
+            return result;
+        }
+
         @Override
         public DictEntry getEntry(Document doc, String langCode) {
             final String japanese = doc.get("japanese");
-            String translations = doc.get("translations");
-            final Map<String, String> langCodeToSentence = new HashMap<String, String>();
-            for (final String sentence: translations.split("\n")) {
-                if(sentence.length()>5 && sentence.charAt(3)==':'){
-                    langCodeToSentence.put(sentence.substring(0, 3), sentence.substring(5));
-                }
-            }
-            if (langCode == null) {
-                langCode = Iso6393Codes.LANG_CODE_ENGLISH;
-            }
-            String english = langCodeToSentence.get(langCode);
+            langCode = getLangCode(langCode);
+            String english = doc.get(getTranslationField(langCode));
             if (english == null) {
-                english = langCodeToSentence.get(Iso6393Codes.LANG_CODE_ENGLISH);
+                english = doc.get(getTranslationField(Iso6393Codes.LANG_CODE_ENGLISH));
             }
             if (english == null) {
-                english = translations;
+                english = getTranslation(doc.get("translations"), langCode);
             }
             final byte[] b = doc.getBinaryValue("kana");
             try {
-                final String reading = b == null ? null : CompressionTools.decompressString(b);
+                final String reading = b == null ? null : InflaterPool.decompressString(b);
                 return new TanakaDictEntry(japanese, reading, english, doc.get("jp-deinflected"));
             } catch (DataFormatException ex) {
                 throw new RuntimeException(ex);
@@ -382,7 +540,79 @@ public enum DictTypeEnum {
             final String line = isJapanese ? entry.getJapanese() : entry.english;
             return matcher.matches(query, line);
         }
+
+        private String getLangCode(final String langCode) {
+            return langCode == null ? Iso6393Codes.LANG_CODE_ENGLISH : langCode;
+        }
+
+        /**
+         * Picks a translation from the translations field of older indices,
+         * which contains a "lang: sentence" line for every language. Falls
+         * back to English, then to all translations.
+         */
+        private String getTranslation(final String translations, final String langCode) {
+            if (translations == null) {
+                return null;
+            }
+            final Map<String, String> langCodeToSentence = new HashMap<String, String>();
+            for (final String sentence: translations.split("\n")) {
+                if(sentence.length()>5 && sentence.charAt(3)==':'){
+                    langCodeToSentence.put(sentence.substring(0, 3), sentence.substring(5));
+                }
+            }
+            String english = langCodeToSentence.get(langCode);
+            if (english == null) {
+                english = langCodeToSentence.get(Iso6393Codes.LANG_CODE_ENGLISH);
+            }
+            if (english == null) {
+                english = translations;
+            }
+            return english;
+        }
     };
+    /**
+     * Loads only the stored fields read by {@link #getEntry(Document, String)}.
+     */
+    private final FieldSelector fieldSelector;
+
+    /**
+     * Creates the dictionary type.
+     *
+     * @param storedFields
+     *            names of the stored fields required to parse an entry.
+     */
+    private DictTypeEnum(final String... storedFields) {
+        fieldSelector = new SetBasedFieldSelector(new HashSet<String>(Arrays.asList(storedFields)), Collections.<String>emptySet());
+    }
+
+    /**
+     * Returns a field selector which loads only the stored fields required by
+     * {@link #getEntry(Document, String)}. Use the selector when loading the
+     * Lucene documents.
+     *
+     * @param langCode
+     *            ISO 639-3 language code of the language instead of english.
+     *            May be null - in such case any language may be used
+     *            (preferably english).
+     * @return the field selector, never null.
+     */
+    public FieldSelector getFieldSelector(final String langCode) {
+        return fieldSelector;
+    }
+
+    /**
+     * Returns the name of the Tatoeba field storing the translations to given
+     * language. The index also contains a <code>langs</code> keyword field
+     * listing the codes of all languages the sentence is translated to.
+     *
+     * @param langCode
+     *            ISO 639-3 language code, not null.
+     * @return the field name.
+     */
+    public static String getTranslationField(final String langCode) {
+        return "translation-" + langCode;
+    }
+
     /**
      * A base http:// location of the dictionary files.
      */
@@ -390,14 +620,218 @@ public enum DictTypeEnum {
 
     /**
      * Returns a Lucene query which matches given query as close as possible.
+     * Use {@link Query#toString()} to obtain a string form of the query for
+     * debugging purposes.
      *
      * @param query
      *            the query.
+     * @param fields
+     *            names of fields present in the index. Newer indices
+     *            may contain additional fields which allow for a more precise
+     *            query; older indices are searched using the basic fields.
      * @return the Apache Lucene query, or a list of queries. Must not be null
      *         nor empty. If multiple queries are returned they have to be
-     *         executed in given order.
+     *         executed in given order. A query may be null if the query
+     *         strings contain no searchable terms (e.g. just stop words); such
+     *         queries should be skipped.
+     */
+    public abstract Query[] getLuceneQuery(final SearchQuery query, final Set<String> fields);
+
+    /**
+     * Returns a Lucene query which matches given query as close as possible.
+     * The query is targeted for an index which contains no optional fields.
+     *
+     * @param query
+     *            the query.
+     * @return the Apache Lucene query, see
+     *         {@link #getLuceneQuery(SearchQuery, Set)} for details.
+     */
+    public final Query[] getLuceneQuery(final SearchQuery query) {
+        return getLuceneQuery(query, Collections.<String>emptySet());
+    }
+
+    /**
+     * Checks if the queries produced by
+     * {@link #getLuceneQuery(SearchQuery, Set)} match exactly the documents
+     * matched by given query. In such case there is no need to filter the
+     * Lucene results, see {@link #tryGetEntry(Document, SearchQuery)}.
+     *
+     * @param query
+     *            the query.
+     * @param fields
+     *            names of fields present in the index.
+     * @return true if the Lucene query is exact, false if the results must be
+     *         filtered. The default implementation returns false.
+     */
+    public boolean isExact(final SearchQuery query, final Set<String> fields) {
+        return false;
+    }
+
+    /**
+     * Checks if the documents in the index are ordered by their rank, as
+     * defined by {@link Ranking}. In such case the results are already
+     * sorted in the index order and there is no need to sort them again.
+     *
+     * @param fields
+     *            names of fields present in the index.
+     * @return true if the index is ordered. The default implementation
+     *         returns false.
+     */
+    public boolean isRanked(final Set<String> fields) {
+        return false;
+    }
+
+    /**
+     * Creates a query matching all given terms in given analyzed field.
+     *
+     * @param field
+     *            the field name.
+     * @param andTerms
+     *            the terms, each term is trimmed.
+     * @return the query, may be null if no term produced a query.
+     */
+    static Query andQuery(final String field, final String[] andTerms) {
+        final Query[] b = new Query[andTerms.length];
+        for (int i = 0; i < andTerms.length; i++) {
+            b[i] = QueryUtils.analyzed(field, andTerms[i].trim());
+        }
+        return QueryUtils.and(b);
+    }
+
+    /**
+     * Creates a query matching all given substrings of given field. See
+     * {@link #substringQuery(String, String, Set)} for details.
+     *
+     * @param field
+     *            the analyzed field.
+     * @param andTerms
+     *            the substrings.
+     * @param fields
+     *            names of fields present in the index.
+     * @return a conjunction of substring queries.
+     */
+    static Query andSubstringQuery(final String field, final String[] andTerms, final Set<String> fields) {
+        final Query[] b = new Query[andTerms.length];
+        for (int i = 0; i < andTerms.length; i++) {
+            b[i] = substringQuery(field, andTerms[i], fields);
+        }
+        return QueryUtils.and(b);
+    }
+
+    /**
+     * Creates a query matching given substring of given field. If the index
+     * contains a bigram field (the field name with the <code>-bigram</code>
+     * suffix, containing lower-cased {@link QueryUtils#bigrams(String)
+     * bigrams} of the field value) and the substring is at least two
+     * characters long, the query matches exactly the documents containing
+     * the substring. Otherwise the phrase query over the analyzed field is
+     * returned, which may match more documents.
+     *
+     * @param field
+     *            the analyzed field.
+     * @param term
+     *            the substring.
+     * @param fields
+     *            names of fields present in the index.
+     * @return the query, may be null.
+     */
+    static Query substringQuery(final String field, final String term, final Set<String> fields) {
+        final String t = term.trim();
+        if (t.length() >= 2 && fields.contains(field + "-bigram")) {
+            return QueryUtils.bigramPhrase(field + "-bigram", t.toLowerCase());
+        }
+        return QueryUtils.analyzed(field, t);
+    }
+
+    /**
+     * Checks if all substrings of given Japanese query are matched exactly by
+     * the bigram field, see {@link #substringQuery(String, String, Set)}.
+     *
+     * @param field
+     *            the analyzed field.
+     * @param query
+     *            the query.
+     * @param fields
+     *            names of fields present in the index.
+     * @return true if the query is a Japanese substring query and all terms
+     *         are at least two characters long.
+     */
+    static boolean isBigramExact(final String field, final SearchQuery query, final Set<String> fields) {
+        if (!query.isJapanese || query.matcher != MatcherEnum.Substring || !fields.contains(field + "-bigram")) {
+            return false;
+        }
+        for (final String q : query.query) {
+            for (final String term : q.split("\\s+AND\\s+")) {
+                // a single character is matched by the analyzed field
+                if (term.trim().length() < 2) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collapses the query strings which differ only in the kana script (e.g.
+     * the katakana and the hiragana variant of a romaji query, see
+     * {@link SearchQuery#searchJpRomaji(String, RomanizationEnum, MatcherEnum)})
+     * into a single {@link KanjiUtils#normalizeKana(String) kana-normalized}
+     * string, to be matched against a kana-normalized field.
+     *
+     * @param kanaField
+     *            the kana-normalized field, must be present in the index.
+     * @param query
+     *            the query.
+     * @param fields
+     *            names of fields present in the index.
+     * @return a copy of the query with normalized query strings, or null if
+     *         the index lacks the field or if some query string has no kana
+     *         counterpart.
      */
-    public abstract String[] getLuceneQuery(final SearchQuery query);
+    static SearchQuery kanaQuery(final String kanaField, final SearchQuery query, final Set<String> fields) {
+        if (!query.isJapanese || query.query.length < 2 || !fields.contains(kanaField)) {
+            return null;
+        }
+        final Map<String, Set<String>> normalized = new LinkedHashMap<String, Set<String>>();
+        for (final String q : query.query) {
+            final String n = KanjiUtils.normalizeKana(q.trim());
+            Set<String> variants = normalized.get(n);
+            if (variants == null) {
+                variants = new HashSet<String>();
+                normalized.put(n, variants);
+            }
+            variants.add(q.trim());
+        }
+        for (final Set<String> variants : normalized.values()) {
+            if (variants.size() < 2) {
+                // a query string without its kana counterpart, the
+                // normalized field would match more than requested
+                return null;
+            }
+        }
+        final SearchQuery result = new SearchQuery(query);
+        result.query = normalized.keySet().toArray(new String[normalized.size()]);
+        return result;
+    }
+
+    /**
+     * Returns a {@link #kanaQuery(String, SearchQuery, Set) kana-normalized}
+     * query if all its substrings are matched exactly by the
+     * <code>field-kana-bigram</code> field.
+     *
+     * @param field
+     *            the analyzed field.
+     * @param query
+     *            the query.
+     * @param fields
+     *            names of fields present in the index.
+     * @return the normalized query, or null if the original query must be
+     *         used.
+     */
+    static SearchQuery kanaSubstringQuery(final String field, final SearchQuery query, final Set<String> fields) {
+        final SearchQuery result = kanaQuery(field + "-kana-bigram", query, fields);
+        return result != null && isBigramExact(field + "-kana", result, fields) ? result : null;
+    }
 
     /**
      * The default dictionary location. A directory name without the
@@ -479,14 +913,68 @@ public enum DictTypeEnum {
      */
     public DictEntry tryGetEntry(final Document doc, final SearchQuery query) {
         final DictEntry entry = tryGetEntry(doc, query.langCode);
+        return matches(entry, query) ? entry : null;
+    }
+
+    /**
+     * Checks if given entry matches given query. Error entries always match,
+     * to make sure that the error is reported.
+     *
+     * @param entry
+     *            the entry, not null.
+     * @param query
+     *            the query
+     * @return true if the entry matches the query, false otherwise.
+     */
+    public boolean matches(final DictEntry entry, final SearchQuery query) {
         if (!entry.isValid() || MiscUtils.isBlank(query.query)) {
-            return entry;
+            return true;
         }
-	for (final String q : query.query) {
-	    if (matchesHandlesAnd(entry, query.isJapanese, q, query.matcher)) {
-		return entry;
-	    }
-	}
+        for (final String q : query.query) {
+            if (matchesHandlesAnd(entry, query.isJapanese, q, query.matcher)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if given entry is matched by the Lucene query built for given
+     * query. Unlike {@link #matches(DictEntry, SearchQuery)}, the
+     * {@link #getKanaQuery(SearchQuery, Set) kana-normalized} query is
+     * matched against the kana-normalized entry when the index matches the
+     * normalized fields, the same way the indexer normalizes them.
+     *
+     * @param entry
+     *            the entry, not null.
+     * @param query
+     *            the query
+     * @param fields
+     *            names of fields present in the index.
+     * @return true if the index would return the entry for the query.
+     */
+    boolean matchesIndexed(final DictEntry entry, final SearchQuery query, final Set<String> fields) {
+        final SearchQuery kana = getKanaQuery(query, fields);
+        if (kana == null || !entry.isValid()) {
+            return matches(entry, query);
+        }
+        final String kanji = entry.kanji == null ? null : KanjiUtils.normalizeKana(entry.kanji);
+        final String reading = entry.reading == null ? null : KanjiUtils.normalizeKana(entry.reading);
+        return matches(new DictEntry(kanji, reading, entry.english), kana);
+    }
+
+    /**
+     * Returns the kana-normalized query matched by the index instead of
+     * given query, see {@link #kanaQuery(String, SearchQuery, Set)}.
+     *
+     * @param query
+     *            the query.
+     * @param fields
+     *            names of fields present in the index.
+     * @return the normalized query, or null if the index matches the query
+     *         itself.
+     */
+    SearchQuery getKanaQuery(final SearchQuery query, final Set<String> fields) {
         return null;
     }
 
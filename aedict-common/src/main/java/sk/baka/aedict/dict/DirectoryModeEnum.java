@@ -0,0 +1,134 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Enumerates the ways a Lucene index may be accessed.
+ *
+ * @author Martin Vysny
+ */
+public enum DirectoryModeEnum {
+
+    /**
+     * The index files are read on demand, using the best {@link FSDirectory}
+     * implementation for the current platform.
+     */
+    Default {
+
+        @Override
+        public Directory open(File location) throws IOException {
+            return FSDirectory.open(location);
+        }
+    },
+    /**
+     * The index files are memory-mapped. The mapped pages do not count
+     * against the heap and may be evicted by the OS when the memory runs low.
+     */
+    MMap {
+
+        @Override
+        public Directory open(File location) throws IOException {
+            return new MMapDirectory(location);
+        }
+    },
+    /**
+     * The whole index is copied to the heap when opened. Fastest, but the
+     * index occupies {@link #getIndexSize(File) its size} in heap for as long
+     * as it stays open. Suitable for small indices only.
+     */
+    Ram {
+
+        @Override
+        public Directory open(File location) throws IOException {
+            final Directory dir = FSDirectory.open(location);
+            try {
+                return new RAMDirectory(dir);
+            } finally {
+                dir.close();
+            }
+        }
+    };
+
+    /**
+     * Opens the index directory.
+     *
+     * @param location
+     *            the index directory location, not null.
+     * @return the directory, never null.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public abstract Directory open(final File location) throws IOException;
+
+    /**
+     * Returns the default memory budget shared by all indices copied to the
+     * heap: an eighth of the maximum heap size.
+     *
+     * @return the memory budget in bytes.
+     */
+    public static long getDefaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 8;
+    }
+
+    /**
+     * Returns the size of the index files. The size of the index copied to
+     * the heap is roughly the same.
+     *
+     * @param location
+     *            the index directory location, not null.
+     * @return the total length of the files in the directory in bytes, 0 if
+     *         the directory does not exist.
+     */
+    public static long getIndexSize(final File location) {
+        final File[] files = location.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long size = 0;
+        for (final File file : files) {
+            if (file.isFile()) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Chooses the access mode for an index of given size. Indices which fit
+     * into the remaining memory budget are copied to the heap, larger indices
+     * are memory-mapped.
+     *
+     * @param indexSize
+     *            the {@link #getIndexSize(File) size of the index} in bytes.
+     * @param memoryBudget
+     *            the amount of heap in bytes still available for indices
+     *            copied to the heap, may be negative.
+     * @return the access mode, never null.
+     */
+    public static DirectoryModeEnum choose(final long indexSize, final long memoryBudget) {
+        return indexSize <= memoryBudget ? Ram : MMap;
+    }
+}
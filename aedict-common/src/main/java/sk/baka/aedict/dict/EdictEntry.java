@@ -259,4 +259,91 @@ public final class EdictEntry extends DictEntry {
         }
         return null;
     }
+
+    /**
+     * Checks if given character is a part of an English word. Used by the
+     * exact English matching: for example, "foo" matches "foo;bar" but not
+     * "foo-bar" nor "foo bar".
+     *
+     * @param c
+     *            the character, lower-case.
+     * @return true if the character is a letter or one of - ' . , characters.
+     */
+    static boolean isWordPart(final char c) {
+        return c == '-' || c == '\'' || c == '.' || c == ',' || Character.isLetter(c);
+    }
+
+    /**
+     * Splits the English part of an EDICT entry into glosses: maximal runs
+     * of words (see {@link #isWordPart(char)}) separated by whitespaces only.
+     * Any other character (e.g. a slash, a semicolon, a brace or a digit)
+     * terminates the gloss. The glosses are lower-cased, trimmed and
+     * consecutive whitespaces are replaced by a single space. An exact English
+     * query matches the entry if and only if the query, normalized by
+     * {@link #toGloss(String)}, is one of the glosses.
+     * <p/>
+     * Example: "(n) (hum) mother/(P)" yields "n", "hum", "mother" and "p".
+     *
+     * @param english
+     *            the English part of an EDICT entry, not null.
+     * @return a set of glosses, never null, may be empty.
+     */
+    public static Set<String> getGlosses(final String english) {
+        final Set<String> result = new HashSet<String>();
+        final String line = english.toLowerCase();
+        int start = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || !isGlossPart(line.charAt(i))) {
+                final String gloss = normalizeWhitespaces(line.substring(start, i));
+                if (gloss.length() > 0) {
+                    result.add(gloss);
+                }
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes an English query to a gloss, as produced by
+     * {@link #getGlosses(String)}.
+     *
+     * @param query
+     *            the query, not null.
+     * @return the gloss or null if the query is blank or contains a character
+     *         which would terminate a gloss - such query cannot be matched by
+     *         a single gloss.
+     */
+    public static String toGloss(final String query) {
+        final String q = query.toLowerCase();
+        for (int i = 0; i < q.length(); i++) {
+            if (!isGlossPart(q.charAt(i))) {
+                return null;
+            }
+        }
+        final String result = normalizeWhitespaces(q);
+        return result.length() == 0 ? null : result;
+    }
+
+    private static boolean isGlossPart(final char c) {
+        return Character.isWhitespace(c) || isWordPart(c);
+    }
+
+    private static String normalizeWhitespaces(final String str) {
+        final StringBuilder sb = new StringBuilder(str.length());
+        boolean whitespace = false;
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = sb.length() > 0;
+                continue;
+            }
+            if (whitespace) {
+                sb.append(' ');
+                whitespace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,229 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * Searches multiple EDICT dictionaries (e.g. the default one and several
+ * custom ones) in parallel and merges the results. Each dictionary is searched
+ * in its own task on given executor; a dictionary which does not respond in
+ * time is reported as an {@link DictEntry#isValid() error entry} and the
+ * results of other dictionaries are still returned.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class FederatedSearch {
+
+    /**
+     * A search result, tagged with the dictionary it was found in. Ordered as
+     * the {@link DictEntry} itself.
+     */
+    public static final class Hit implements Comparable<Hit>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * The entry, not null. May be an error entry if the search in given
+         * dictionary failed or timed out.
+         */
+        public final DictEntry entry;
+        /**
+         * The dictionary the entry originates from, not null.
+         */
+        public final Dictionary dictionary;
+
+        public Hit(final DictEntry entry, final Dictionary dictionary) {
+            Check.checkNotNull("entry", entry);
+            Check.checkNotNull("dictionary", dictionary);
+            this.entry = entry;
+            this.dictionary = dictionary;
+        }
+
+        public int compareTo(Hit o) {
+            return entry.compareTo(o.entry);
+        }
+
+        @Override
+        public String toString() {
+            return entry + " (" + dictionary + ")";
+        }
+    }
+    private final LuceneSearchRegistry registry;
+    private final ExecutorService executor;
+    private final long timeout;
+
+    /**
+     * Creates the federated search.
+     *
+     * @param registry
+     *            the dictionaries are opened using this registry, not null.
+     * @param executor
+     *            runs the searches. Should be bounded, see
+     *            {@link #newExecutor(int)}. The caller is responsible for
+     *            shutting it down.
+     * @param timeout
+     *            the maximum time in milliseconds to wait for a single
+     *            dictionary, measured from the start of the
+     *            {@link #search(SearchQuery, Collection, int) search}.
+     */
+    public FederatedSearch(final LuceneSearchRegistry registry, final ExecutorService executor, final long timeout) {
+        Check.checkNotNull("registry", registry);
+        Check.checkNotNull("executor", executor);
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Parameter timeout: invalid value " + timeout + ": must be positive");
+        }
+        this.registry = registry;
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates an executor with given number of daemon threads and an unbounded
+     * task queue.
+     *
+     * @param threads
+     *            the maximum number of concurrently executed searches.
+     * @return the executor, never null.
+     */
+    public static ExecutorService newExecutor(final int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "FederatedSearch-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Searches all {@link Dictionary#listEdictInstalled() installed} EDICT
+     * dictionaries.
+     *
+     * @param query
+     *            the EDICT query, not null.
+     * @param maxResults
+     *            the maximum number of results per dictionary.
+     * @return the merged results, sorted, never null.
+     */
+    public List<Hit> search(final SearchQuery query, final int maxResults) {
+        return search(query, Dictionary.listEdictInstalled(), maxResults);
+    }
+
+    /**
+     * Searches given dictionaries in parallel.
+     *
+     * @param query
+     *            the query, not null. Must be applicable to all dictionaries.
+     * @param dictionaries
+     *            the dictionaries to search, not null.
+     * @param maxResults
+     *            the maximum number of results per dictionary.
+     * @return the merged results, sorted, never null. A dictionary which
+     *         failed or timed out contributes a single error entry.
+     */
+    public List<Hit> search(final SearchQuery query, final Collection<Dictionary> dictionaries, final int maxResults) {
+        Check.checkNotNull("query", query);
+        Check.checkNotNull("dictionaries", dictionaries);
+        query.validate();
+        final long deadline = System.currentTimeMillis() + timeout;
+        // the searches are terminated cooperatively: an interrupt would close
+        // the NIO channels of the indices shared through the registry
+        final CancelToken token = new CancelToken();
+        final List<Dictionary> dicts = new ArrayList<Dictionary>(dictionaries);
+        final List<Future<SearchResult>> futures = new ArrayList<Future<SearchResult>>(dicts.size());
+        for (final Dictionary dictionary : dicts) {
+            if (dictionary.dte != query.dictType) {
+                throw new IllegalArgumentException("Cannot search " + dictionary + " with a " + query.dictType + " query");
+            }
+            futures.add(executor.submit(new Callable<SearchResult>() {
+
+                public SearchResult call() throws Exception {
+                    final long budget = deadline - System.currentTimeMillis();
+                    if (budget <= 0) {
+                        // spent waiting in the executor queue
+                        return new SearchResult(Collections.<DictEntry>emptyList(), true);
+                    }
+                    final LuceneSearch search = registry.open(dictionary, false);
+                    try {
+                        return search.search(query, maxResults, token, budget, TimeUnit.MILLISECONDS);
+                    } finally {
+                        search.close();
+                    }
+                }
+            }));
+        }
+        final List<Hit> result = new ArrayList<Hit>();
+        for (int i = 0; i < dicts.size(); i++) {
+            final Dictionary dictionary = dicts.get(i);
+            final Future<SearchResult> future = futures.get(i);
+            try {
+                final SearchResult r = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (r.truncated) {
+                    result.add(newTimedOut(dictionary));
+                } else {
+                    for (final DictEntry entry : r.entries) {
+                        result.add(new Hit(entry, dictionary));
+                    }
+                }
+            } catch (TimeoutException ex) {
+                // never interrupt the search, the token terminates it
+                token.cancel();
+                future.cancel(false);
+                result.add(newTimedOut(dictionary));
+            } catch (ExecutionException ex) {
+                result.add(new Hit(DictEntry.newErrorMsg(ex.getCause()), dictionary));
+            } catch (InterruptedException ex) {
+                // cancel the remaining searches and bail out
+                token.cancel();
+                for (final Future<?> f : futures) {
+                    f.cancel(false);
+                }
+                Thread.currentThread().interrupt();
+                result.add(new Hit(DictEntry.newErrorMsg(ex), dictionary));
+                break;
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private Hit newTimedOut(final Dictionary dictionary) {
+        return new Hit(DictEntry.newErrorMsg("Search in " + dictionary + " timed out after " + timeout + "ms"), dictionary);
+    }
+}
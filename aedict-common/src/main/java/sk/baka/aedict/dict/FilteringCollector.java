@@ -0,0 +1,226 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Parses and filters the matched documents as they are collected, and stops
+ * the search as soon as enough entries are found. The documents are not
+ * scored; they are collected in the index order.
+ * <p/>
+ * The search is also terminated when given {@link CancelToken} is cancelled
+ * or when the deadline expires; the collector is then marked as
+ * {@link #isTruncated() truncated}.
+ *
+ * @author Martin Vysny
+ */
+final class FilteringCollector extends Collector {
+
+    /**
+     * Thrown by {@link #collect(int)} to terminate the search. Has no stack
+     * trace, to keep the throw cheap.
+     */
+    static final class Terminated extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+    private static final Terminated TERMINATED = new Terminated();
+    private final DictTypeEnum dictType;
+    private final SearchQuery query;
+    private final boolean isExact;
+    private final FieldSelector fieldSelector;
+    private final List<DictEntry> result;
+    private final int maxResults;
+    /**
+     * Polled for every collected document, may be null.
+     */
+    private final CancelToken token;
+    /**
+     * The deadline as in {@link System#nanoTime()}, or {@link #NO_DEADLINE}.
+     */
+    private final long deadline;
+    /**
+     * Denotes no deadline.
+     */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+    private boolean truncated = false;
+    /**
+     * Measures the collection, null if the search is not measured.
+     */
+    private SearchMetrics metrics = null;
+    private IndexReader reader;
+
+    /**
+     * Creates the collector.
+     *
+     * @param dictType
+     *            the dictionary type.
+     * @param query
+     *            the query, used to filter the results.
+     * @param isExact
+     *            if true then the results are not filtered.
+     * @param result
+     *            the matched entries are added here.
+     * @param maxResults
+     *            the search is terminated when the result list reaches this
+     *            size.
+     */
+    FilteringCollector(final DictTypeEnum dictType, final SearchQuery query, final boolean isExact, final List<DictEntry> result, final int maxResults) {
+        this(dictType, query, isExact, result, maxResults, null, NO_DEADLINE);
+    }
+
+    /**
+     * Creates the collector.
+     *
+     * @param dictType
+     *            the dictionary type.
+     * @param query
+     *            the query, used to filter the results.
+     * @param isExact
+     *            if true then the results are not filtered.
+     * @param result
+     *            the matched entries are added here.
+     * @param maxResults
+     *            the search is terminated when the result list reaches this
+     *            size.
+     * @param token
+     *            the search is terminated when this token is cancelled. May
+     *            be null.
+     * @param deadline
+     *            the search is terminated when {@link System#nanoTime()}
+     *            reaches this value. {@link #NO_DEADLINE} if there is no
+     *            deadline.
+     */
+    FilteringCollector(final DictTypeEnum dictType, final SearchQuery query, final boolean isExact, final List<DictEntry> result, final int maxResults, final CancelToken token, final long deadline) {
+        this.dictType = dictType;
+        this.query = query;
+        this.isExact = isExact;
+        this.fieldSelector = dictType.getFieldSelector(query.langCode);
+        this.result = result;
+        this.maxResults = maxResults;
+        this.token = token;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Checks if the result list is full.
+     *
+     * @return true if no more entries are accepted.
+     */
+    boolean isFull() {
+        return result.size() >= maxResults;
+    }
+
+    /**
+     * Checks if the search was cancelled or if the deadline has expired. If
+     * yes, the collector is marked as truncated.
+     *
+     * @return true if the search must be terminated.
+     */
+    boolean checkTruncated() {
+        if (!truncated) {
+            truncated = (token != null && token.isCancelled()) || (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0);
+        }
+        return truncated;
+    }
+
+    /**
+     * Checks if the search was terminated prematurely.
+     *
+     * @return true if the search was cancelled or ran out of time.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Measures the load, decode and filter phases of the collected documents.
+     *
+     * @param metrics
+     *            the metrics to fill, null if the search is not measured.
+     */
+    void setMetrics(final SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        // scores are not used
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        if (isFull() || checkTruncated()) {
+            throw TERMINATED;
+        }
+        final DictEntry entry;
+        if (metrics == null) {
+            entry = isExact ? dictType.tryGetEntry(reader.document(doc, fieldSelector), query.langCode) : dictType.tryGetEntry(reader.document(doc, fieldSelector), query);
+        } else {
+            entry = collectMeasured(doc);
+        }
+        if (entry != null) {
+            result.add(entry);
+            if (isFull()) {
+                throw TERMINATED;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #collect(int)}, but measures the phases separately.
+     */
+    private DictEntry collectMeasured(final int doc) throws IOException {
+        final long start = System.nanoTime();
+        final Document document = reader.document(doc, fieldSelector);
+        final long loaded = System.nanoTime();
+        final DictEntry entry = dictType.tryGetEntry(document, query.langCode);
+        final long decoded = System.nanoTime();
+        final boolean matches = isExact || dictType.matches(entry, query);
+        metrics.add(SearchPhaseEnum.Load, loaded - start);
+        metrics.add(SearchPhaseEnum.Decode, decoded - loaded);
+        metrics.add(SearchPhaseEnum.Filter, System.nanoTime() - decoded);
+        metrics.hitsFetched++;
+        metrics.addStoredBytes(document);
+        return matches ? entry : null;
+    }
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        // keep the results in the index order
+        return false;
+    }
+}
@@ -0,0 +1,858 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import sk.baka.autils.MiscUtils;
+
+/**
+ * A compact, memory-mapped index of the EDICT headwords, which answers the
+ * exact and the prefix Japanese lookups without the Lucene index. The file is
+ * produced by the indexer alongside the Lucene index, see {@link #FILE_NAME}.
+ * <p/>
+ * The query is built by {@link DictTypeEnum#getLuceneQuery(SearchQuery, Set)}
+ * as usual, however its terms are looked up by a binary search over sorted
+ * keys instead of being searched in the Lucene index. The entries are stored
+ * pre-parsed and in the rank order of the Lucene documents, therefore the
+ * result is identical to the result of {@link LuceneSearch}.
+ * <p/>
+ * The file format, all numbers are big-endian ints:
+ * <ul>
+ * <li>{@link #MAGIC}, {@link #VERSION}, the number of fields of the Lucene
+ * index followed by the field names (as strings).</li>
+ * <li>The number of entries <i>n</i>,
+ * <i>n+1</i> offsets of the entries relative to the entry data, followed by
+ * the entry data. Each entry consists of a flag byte ({@link #FLAG_KANJI},
+ * {@link #FLAG_COMMON}), the kanji (if present), the reading and the English
+ * translation; each string is stored as a byte length followed by UTF-8
+ * bytes.</li>
+ * <li>The number of sections, then the sections. A section holds the values of
+ * a single keyword field of the Lucene index: the field name (as a string), the
+ * number of keys <i>k</i>, <i>k+1</i> offsets of the keys relative to the key
+ * data, <i>k</i> entry indices, followed by the key data. The keys are UTF-8
+ * encoded and sorted by their unsigned bytes, then by the entry index; a key
+ * occurs once for each entry it belongs to.</li>
+ * </ul>
+ * Thread-safe: the buffer is accessed by absolute reads only.
+ *
+ * @author Martin Vysny
+ */
+public final class HeadwordIndex {
+
+    /**
+     * The name of the file in the Lucene index directory.
+     */
+    public static final String FILE_NAME = "headwords.bin";
+    /**
+     * The first int of the file.
+     */
+    public static final int MAGIC = 0x41454857;
+    /**
+     * The file format version.
+     */
+    public static final int VERSION = 2;
+    /**
+     * The entry contains the kanji.
+     */
+    public static final int FLAG_KANJI = 1;
+    /**
+     * The entry is a {@link DictEntry#isCommon common} word.
+     */
+    public static final int FLAG_COMMON = 2;
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    /**
+     * Position of the entry offsets.
+     */
+    private final int entryOffsets;
+    /**
+     * Position of the entry data.
+     */
+    private final int entryData;
+    /**
+     * Maps the field name to the section.
+     */
+    private final Map<String, Section> sections = new HashMap<String, Section>();
+    /**
+     * The fields of the Lucene index the queries are built for, as written
+     * by the indexer.
+     */
+    private final Set<String> fields;
+
+    /**
+     * Memory-maps the headword index of given Lucene index directory.
+     *
+     * @param directory
+     *            the Lucene index directory, not null.
+     * @return the headword index, null if the directory does not contain the
+     *         {@link #FILE_NAME headword file} (e.g. the dictionary was
+     *         produced by an older indexer).
+     * @throws IOException
+     *             on I/O error or if the file is not a headword index.
+     */
+    public static HeadwordIndex open(final File directory) throws IOException {
+        final File file = new File(directory, FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        final RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid when the file is closed
+            return new HeadwordIndex(f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length()));
+        } finally {
+            MiscUtils.closeQuietly(f);
+        }
+    }
+
+    /**
+     * Creates the index over given buffer.
+     *
+     * @param buffer
+     *            the file contents, not null. Must not be modified.
+     * @throws IOException
+     *             if the buffer does not contain a headword index.
+     */
+    public HeadwordIndex(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a headword index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported headword index version " + buffer.getInt(4));
+        }
+        int pos = 8;
+        final int fieldCount = buffer.getInt(pos);
+        pos += 4;
+        final Set<String> f = new HashSet<String>();
+        for (int i = 0; i < fieldCount; i++) {
+            final int nameLength = buffer.getInt(pos);
+            f.add(decode(pos + 4, nameLength));
+            pos += 4 + nameLength;
+        }
+        fields = Collections.unmodifiableSet(f);
+        entryCount = buffer.getInt(pos);
+        entryOffsets = pos + 4;
+        entryData = entryOffsets + 4 * (entryCount + 1);
+        pos = entryData + buffer.getInt(entryOffsets + 4 * entryCount);
+        final int sectionCount = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < sectionCount; i++) {
+            final int nameLength = buffer.getInt(pos);
+            final String name = decode(pos + 4, nameLength);
+            pos += 4 + nameLength;
+            final Section section = new Section(pos);
+            sections.put(name, section);
+            pos = section.end();
+        }
+    }
+
+    /**
+     * A sorted array of the values of a single keyword field.
+     */
+    private final class Section {
+
+        private final int keyCount;
+        /**
+         * Position of the key offsets.
+         */
+        private final int keyOffsets;
+        /**
+         * Position of the entry indices.
+         */
+        private final int entryIds;
+        /**
+         * Position of the key data.
+         */
+        private final int keyData;
+
+        Section(final int pos) {
+            keyCount = buffer.getInt(pos);
+            keyOffsets = pos + 4;
+            entryIds = keyOffsets + 4 * (keyCount + 1);
+            keyData = entryIds + 4 * keyCount;
+        }
+
+        /**
+         * Returns the position following this section.
+         */
+        int end() {
+            return keyData + buffer.getInt(keyOffsets + 4 * keyCount);
+        }
+
+        int getEntryId(final int key) {
+            return buffer.getInt(entryIds + 4 * key);
+        }
+
+        /**
+         * Compares given key with given value.
+         *
+         * @param key
+         *            the key index.
+         * @param value
+         *            the value
+         * @param prefix
+         *            if true then a key starting with the value is considered
+         *            equal to the value.
+         * @return negative number, zero or positive number if the key is
+         *         less than, equal to or greater than the value.
+         */
+        int compare(final int key, final String value, final boolean prefix) {
+            final int start = keyData + buffer.getInt(keyOffsets + 4 * key);
+            final int length = keyData + buffer.getInt(keyOffsets + 4 * key + 4) - start;
+            // encode the value on the fly, to avoid allocating the bytes
+            int pos = 0;
+            for (int i = 0; i < value.length();) {
+                int cp = value.codePointAt(i);
+                i += Character.charCount(cp);
+                if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+                    // an unpaired surrogate, encoded by String.getBytes() as
+                    // a question mark
+                    cp = '?';
+                }
+                final int n = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+                for (int k = 0; k < n; k++) {
+                    if (pos == length) {
+                        // the key is a prefix of the value
+                        return -1;
+                    }
+                    final int c = (buffer.get(start + pos) & 0xFF) - utf8Byte(cp, n, k);
+                    if (c != 0) {
+                        return c;
+                    }
+                    pos++;
+                }
+            }
+            return prefix || pos == length ? 0 : 1;
+        }
+
+        /**
+         * Returns the index of the first key which is greater than or equal
+         * to given value.
+         */
+        int lowerBound(final String value) {
+            int low = 0;
+            int high = keyCount;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(mid, value, false) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the index of the first key which is greater than given
+         * value. If prefix is true then the keys starting with the value are
+         * considered equal to the value.
+         */
+        int upperBound(final String value, final boolean prefix) {
+            int low = 0;
+            int high = keyCount;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(mid, value, prefix) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the entries having a key equal to (or starting with) given
+         * value. The entries of a single key are stored in the entry order
+         * and are walked directly. The entries of the keys starting with the
+         * value are not ordered; an intersection needs all of them, therefore
+         * they are sorted into a single array.
+         */
+        Postings postings(final String value, final boolean prefix) {
+            final int from = lowerBound(value);
+            final int to = upperBound(value, prefix);
+            if (!prefix) {
+                return new KeyPostings(this, from, to);
+            }
+            final Selection selection = new Selection(to - from, to - from);
+            for (int i = from; i < to; i++) {
+                selection.offer(getEntryId(i));
+            }
+            selection.finish();
+            return new ArrayPostings(selection);
+        }
+    }
+
+    /**
+     * Selects the smallest distinct entry indices out of an unordered stream.
+     * Uses a single int array of at most twice the number of selected
+     * entries: the offered indices are appended to the array; when the array
+     * is full, it is sorted, the duplicates are dropped and only the selected
+     * number of the smallest indices is kept. Indices greater than the
+     * largest kept index are rejected right away.
+     */
+    private static final class Selection {
+
+        private final int capacity;
+        private final int[] ids;
+        private int size = 0;
+        /**
+         * Indices greater than or equal to this one are not selected.
+         */
+        private int threshold = Integer.MAX_VALUE;
+
+        /**
+         * Creates the selection.
+         *
+         * @param capacity
+         *            the maximum number of selected indices, positive.
+         * @param candidates
+         *            the number of indices which will be offered, at least
+         *            the capacity.
+         */
+        Selection(final int capacity, final int candidates) {
+            this.capacity = capacity;
+            ids = new int[(int) Math.min(2L * capacity, candidates)];
+        }
+
+        void offer(final int id) {
+            if (id >= threshold) {
+                return;
+            }
+            if (size == ids.length) {
+                finish();
+                if (id >= threshold) {
+                    return;
+                }
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * Sorts the offered indices, drops duplicates and keeps at most
+         * {@link #capacity} smallest ones.
+         */
+        void finish() {
+            Arrays.sort(ids, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n == 0 || ids[i] != ids[n - 1]) {
+                    ids[n++] = ids[i];
+                }
+            }
+            size = Math.min(n, capacity);
+            if (size == capacity && size > 0) {
+                threshold = ids[size - 1];
+            }
+        }
+    }
+
+    /**
+     * Iterates over the indices of the entries matching a query, in the
+     * ascending order. The entries are produced lazily, therefore a search
+     * stops as soon as the result list is full.
+     */
+    private static abstract class Postings {
+
+        /**
+         * Returned by {@link #next()} when there are no more entries. Greater
+         * than any entry index.
+         */
+        static final int NO_MORE = Integer.MAX_VALUE;
+
+        /**
+         * Returns the next matching entry.
+         *
+         * @return the entry index, greater than the previously returned one;
+         *         {@link #NO_MORE} if there are no more entries.
+         */
+        abstract int next();
+    }
+
+    /**
+     * The entries of a range of equal keys.
+     */
+    private static final class KeyPostings extends Postings {
+
+        private final Section section;
+        private final int to;
+        private int key;
+
+        KeyPostings(final Section section, final int from, final int to) {
+            this.section = section;
+            this.key = from;
+            this.to = to;
+        }
+
+        @Override
+        int next() {
+            return key < to ? section.getEntryId(key++) : NO_MORE;
+        }
+    }
+
+    /**
+     * The entries of a {@link Selection#finish() finished} selection.
+     */
+    private static final class ArrayPostings extends Postings {
+
+        private final Selection selection;
+        private int index = 0;
+
+        ArrayPostings(final Selection selection) {
+            this.selection = selection;
+        }
+
+        @Override
+        int next() {
+            return index < selection.size ? selection.ids[index++] : NO_MORE;
+        }
+    }
+
+    /**
+     * Merges the entries of multiple postings, using a heap ordered by the
+     * current entry of each postings.
+     */
+    private static final class OrPostings extends Postings {
+
+        private final Postings[] heap;
+        private final int[] heads;
+        private int size = 0;
+
+        OrPostings(final List<Postings> postings) {
+            heap = new Postings[postings.size()];
+            heads = new int[postings.size()];
+            for (final Postings p : postings) {
+                final int head = p.next();
+                if (head != NO_MORE) {
+                    heap[size] = p;
+                    heads[size] = head;
+                    siftUp(size++);
+                }
+            }
+        }
+
+        @Override
+        int next() {
+            if (size == 0) {
+                return NO_MORE;
+            }
+            final int result = heads[0];
+            // an entry may be matched by multiple postings
+            while (size > 0 && heads[0] == result) {
+                final int head = heap[0].next();
+                if (head == NO_MORE) {
+                    size--;
+                    heap[0] = heap[size];
+                    heads[0] = heads[size];
+                    heap[size] = null;
+                } else {
+                    heads[0] = head;
+                }
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (heads[parent] <= heads[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                final int left = 2 * i + 1;
+                if (left >= size) {
+                    break;
+                }
+                final int child = left + 1 < size && heads[left + 1] < heads[left] ? left + 1 : left;
+                if (heads[i] <= heads[child]) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(final int i, final int j) {
+            final Postings p = heap[i];
+            heap[i] = heap[j];
+            heap[j] = p;
+            final int h = heads[i];
+            heads[i] = heads[j];
+            heads[j] = h;
+        }
+    }
+
+    /**
+     * Intersects the entries of multiple postings.
+     */
+    private static final class AndPostings extends Postings {
+
+        private final Postings[] postings;
+        /**
+         * The current entry of each postings.
+         */
+        private final int[] current;
+
+        AndPostings(final List<Postings> postings) {
+            this.postings = postings.toArray(new Postings[postings.size()]);
+            current = new int[postings.size()];
+            Arrays.fill(current, -1);
+        }
+
+        @Override
+        int next() {
+            int candidate = current[0] = postings[0].next();
+            for (int i = 1; i < postings.length && candidate != NO_MORE;) {
+                while (current[i] < candidate) {
+                    current[i] = postings[i].next();
+                }
+                if (current[i] == candidate) {
+                    i++;
+                    continue;
+                }
+                // skip to the entry of the postings which went ahead
+                while (current[0] < current[i]) {
+                    current[0] = postings[0].next();
+                }
+                candidate = current[0];
+                i = 1;
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Returns k-th byte of the UTF-8 encoding of given code point.
+     *
+     * @param cp
+     *            the code point
+     * @param n
+     *            the length of the encoding, 1..4
+     * @param k
+     *            the byte index, 0..n-1
+     * @return the byte value, 0..255.
+     */
+    private static int utf8Byte(final int cp, final int n, final int k) {
+        if (n == 1) {
+            return cp;
+        }
+        if (k == 0) {
+            switch (n) {
+                case 2:
+                    return 0xC0 | (cp >> 6);
+                case 3:
+                    return 0xE0 | (cp >> 12);
+                default:
+                    return 0xF0 | (cp >> 18);
+            }
+        }
+        return 0x80 | ((cp >> (6 * (n - 1 - k))) & 0x3F);
+    }
+
+    /**
+     * Decodes an UTF-8 string.
+     *
+     * @param pos
+     *            the position of the first byte.
+     * @param length
+     *            the number of bytes.
+     * @return the string, never null.
+     */
+    private String decode(final int pos, final int length) {
+        final char[] chars = new char[length];
+        int n = 0;
+        for (int i = pos, end = pos + length; i < end;) {
+            final int b = buffer.get(i++) & 0xFF;
+            final int cp;
+            if (b < 0x80) {
+                cp = b;
+            } else if (b < 0xE0) {
+                cp = ((b & 0x1F) << 6) | (buffer.get(i++) & 0x3F);
+            } else if (b < 0xF0) {
+                cp = ((b & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6) | (buffer.get(i++) & 0x3F);
+            } else {
+                cp = ((b & 0x07) << 18) | ((buffer.get(i++) & 0x3F) << 12) | ((buffer.get(i++) & 0x3F) << 6) | (buffer.get(i++) & 0x3F);
+            }
+            n += Character.toChars(cp, chars, n);
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Returns names of all fields of the Lucene index this index was produced
+     * along with.
+     *
+     * @return an unmodifiable set of field names.
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the entry with given index.
+     *
+     * @param id
+     *            the entry index, the same as the Lucene document number.
+     * @return the entry, never null.
+     */
+    public EdictEntry getEntry(final int id) {
+        if (id < 0 || id >= entryCount) {
+            throw new IllegalArgumentException("Parameter id: invalid value " + id + ": must be 0.." + (entryCount - 1));
+        }
+        int pos = entryData + buffer.getInt(entryOffsets + 4 * id);
+        final int flags = buffer.get(pos++);
+        String kanji = null;
+        if ((flags & FLAG_KANJI) != 0) {
+            final int length = buffer.getInt(pos);
+            kanji = decode(pos + 4, length);
+            pos += 4 + length;
+        }
+        final int readingLength = buffer.getInt(pos);
+        final String reading = decode(pos + 4, readingLength);
+        pos += 4 + readingLength;
+        final String english = decode(pos + 4, buffer.getInt(pos));
+        return new EdictEntry(kanji, reading, english, (flags & FLAG_COMMON) != 0);
+    }
+
+    /**
+     * Checks if given query may be answered by this index: an exact or a
+     * prefix Japanese EDICT query. The check is cheap; the query may still be
+     * rejected by {@link #search(SearchQuery, int)}.
+     *
+     * @param query
+     *            the query, not null.
+     * @return true if the query may be searched.
+     */
+    public boolean isSupported(final SearchQuery query) {
+        return query.dictType == DictTypeEnum.Edict && query.isJapanese && (query.matcher == MatcherEnum.Exact || query.matcher == MatcherEnum.StartsWith);
+    }
+
+    /**
+     * Performs a search. The exact lookup of a single term allocates nothing
+     * but the returned entries. The prefix lookups (and the alternatives of
+     * the exact and the prefix lookups) select the first matching entries
+     * using a single int array sized by the maximum number of results. The
+     * other lookups merge the entries of the matching keys in the entry
+     * order and stop as soon as the result list is full.
+     *
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @return the same result list as returned by
+     *         {@link LuceneSearch#search(SearchQuery, int)}; null if the query
+     *         cannot be answered by this index and the Lucene index must be
+     *         searched instead.
+     */
+    public List<DictEntry> search(final SearchQuery query, final int maxResults) {
+        if (!isSupported(query)) {
+            return null;
+        }
+        query.validate();
+        if (!DictTypeEnum.Edict.isExact(query, fields)) {
+            // the results would have to be filtered
+            return null;
+        }
+        final Query[] queries = DictTypeEnum.Edict.getLuceneQuery(query, fields);
+        if (queries.length != 1) {
+            return null;
+        }
+        final List<DictEntry> result = new ArrayList<DictEntry>();
+        if (queries[0] == null) {
+            // nothing to search for
+            return result;
+        }
+        if (queries[0] instanceof TermQuery) {
+            // the common case: walk the entries of the key directly
+            final Term term = ((TermQuery) queries[0]).getTerm();
+            final Section section = sections.get(term.field());
+            if (section == null) {
+                return null;
+            }
+            for (int i = section.lowerBound(term.text()); i < section.keyCount && result.size() < maxResults && section.compare(i, term.text(), false) == 0; i++) {
+                result.add(getEntry(section.getEntryId(i)));
+            }
+            return result;
+        }
+        final int keys = countKeys(queries[0]);
+        if (keys >= 0) {
+            if (keys == 0 || maxResults <= 0) {
+                return result;
+            }
+            final Selection selection = new Selection(Math.min(maxResults, keys), keys);
+            selectKeys(queries[0], selection);
+            selection.finish();
+            for (int i = 0; i < selection.size; i++) {
+                result.add(getEntry(selection.ids[i]));
+            }
+            return result;
+        }
+        final Postings postings = postings(queries[0]);
+        if (postings == null) {
+            return null;
+        }
+        while (result.size() < maxResults) {
+            final int id = postings.next();
+            if (id == Postings.NO_MORE) {
+                break;
+            }
+            result.add(getEntry(id));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the keys matched by given query, if the query is an alternative
+     * of term and prefix queries.
+     *
+     * @param query
+     *            the query, not null.
+     * @return the number of keys, -1 if the query is not an alternative or
+     *         is not supported.
+     */
+    private int countKeys(final Query query) {
+        if (query instanceof TermQuery || query instanceof PrefixQuery) {
+            final boolean prefix = query instanceof PrefixQuery;
+            final Term term = prefix ? ((PrefixQuery) query).getPrefix() : ((TermQuery) query).getTerm();
+            final Section section = sections.get(term.field());
+            return section == null ? -1 : section.upperBound(term.text(), prefix) - section.lowerBound(term.text());
+        }
+        if (!(query instanceof BooleanQuery)) {
+            return -1;
+        }
+        final BooleanClause[] clauses = ((BooleanQuery) query).getClauses();
+        if (clauses.length == 0) {
+            return -1;
+        }
+        int count = 0;
+        for (final BooleanClause clause : clauses) {
+            if (clause.getOccur() != BooleanClause.Occur.SHOULD) {
+                return -1;
+            }
+            final int c = countKeys(clause.getQuery());
+            if (c < 0) {
+                return -1;
+            }
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * Offers the entries of all keys matched by given query to the
+     * selection. The query must be {@link #countKeys(Query) supported}.
+     *
+     * @param query
+     *            the query, not null.
+     * @param selection
+     *            the selection, not null.
+     */
+    private void selectKeys(final Query query, final Selection selection) {
+        if (query instanceof BooleanQuery) {
+            for (final BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+                selectKeys(clause.getQuery(), selection);
+            }
+            return;
+        }
+        final boolean prefix = query instanceof PrefixQuery;
+        final Term term = prefix ? ((PrefixQuery) query).getPrefix() : ((TermQuery) query).getTerm();
+        final Section section = sections.get(term.field());
+        for (int i = section.lowerBound(term.text()), to = section.upperBound(term.text(), prefix); i < to; i++) {
+            selection.offer(section.getEntryId(i));
+        }
+    }
+
+    /**
+     * Evaluates given query.
+     *
+     * @param query
+     *            the query, not null.
+     * @return the matching entries, null if the query is not supported.
+     */
+    private Postings postings(final Query query) {
+        if (query instanceof TermQuery) {
+            final Term term = ((TermQuery) query).getTerm();
+            final Section section = sections.get(term.field());
+            return section == null ? null : section.postings(term.text(), false);
+        }
+        if (query instanceof PrefixQuery) {
+            final Term term = ((PrefixQuery) query).getPrefix();
+            final Section section = sections.get(term.field());
+            return section == null ? null : section.postings(term.text(), true);
+        }
+        if (!(query instanceof BooleanQuery)) {
+            return null;
+        }
+        final BooleanClause[] clauses = ((BooleanQuery) query).getClauses();
+        if (clauses.length == 0) {
+            return null;
+        }
+        final List<Postings> result = new ArrayList<Postings>(clauses.length);
+        for (final BooleanClause clause : clauses) {
+            if (clause.getOccur() != clauses[0].getOccur() || clause.getOccur() == BooleanClause.Occur.MUST_NOT) {
+                return null;
+            }
+            final Postings p = postings(clause.getQuery());
+            if (p == null) {
+                return null;
+            }
+            result.add(p);
+        }
+        if (result.size() == 1) {
+            return result.get(0);
+        }
+        return clauses[0].getOccur() == BooleanClause.Occur.MUST ? new AndPostings(result) : new OrPostings(result);
+    }
+}
@@ -0,0 +1,331 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * A search-as-you-type session. When the user extends the query (e.g. "たべ"
+ * after "た") then the new query matches a subset of the entries matched by
+ * the previous query; if all entries matched by the previous query are known,
+ * they are simply filtered in memory and the index is not searched at all.
+ * The filter matches the entries the same way the index does: when the index
+ * matches the kana-normalized fields, the kana of both the entries and the
+ * query are normalized.
+ * <p/>
+ * A query refines the previous one when it differs only in the query terms
+ * and each new term {@link MatcherEnum#matches(String, String) matches} the
+ * corresponding previous term: an extended term for the
+ * {@link MatcherEnum#StartsWith StartsWith}, {@link MatcherEnum#EndsWith
+ * EndsWith} and {@link MatcherEnum#Substring Substring} matchers, the same
+ * term for the {@link MatcherEnum#Exact Exact} matcher.
+ * <p/>
+ * When the index returns a full page of results, the complete candidate list
+ * (up to a limit) is prefetched in the background, so that the next
+ * keystroke is served from the memory. A prefetch which is not finished by
+ * then is {@link CancelToken cancelled}.
+ * <p/>
+ * Thread-safe. The session holds no index open: the index is leased from the
+ * registry for every search.
+ *
+ * @author Martin Vysny
+ */
+public final class IncrementalSearch {
+
+    private final LuceneSearchRegistry registry;
+    private final Dictionary dictionary;
+    private final boolean sort;
+    private final int maxResults;
+    private final int maxCandidates;
+    /**
+     * Runs the prefetch, may be null.
+     */
+    private final Executor executor;
+    /**
+     * The last query, null if there was no search yet.
+     */
+    private SearchQuery lastQuery = null;
+    /**
+     * All entries matching {@link #lastQuery}, in the result order. Null if
+     * not known.
+     */
+    private List<DictEntry> candidates = null;
+    /**
+     * Names of fields present in the index which returned the
+     * {@link #candidates}, null if the index was not searched yet.
+     */
+    private Set<String> fields = null;
+    /**
+     * Fetches all candidates of the {@link #lastQuery}, null if there is no
+     * prefetch in progress.
+     */
+    private Future<SearchResult> prefetch = null;
+    private int indexSearchCount = 0;
+    private int refinedCount = 0;
+
+    /**
+     * Creates a new session.
+     *
+     * @param registry
+     *            the index is leased from this registry, not null.
+     * @param dictionary
+     *            the dictionary to search in, not null.
+     * @param sort
+     *            if true then the results are sorted.
+     * @param maxResults
+     *            the maximum number of results returned by
+     *            {@link #search(SearchQuery)}.
+     * @param maxCandidates
+     *            the maximum number of prefetched entries. A query matching
+     *            more entries is always searched in the index.
+     * @param executor
+     *            runs the prefetch. If null then nothing is prefetched.
+     */
+    public IncrementalSearch(final LuceneSearchRegistry registry, final Dictionary dictionary, final boolean sort, final int maxResults, final int maxCandidates, final Executor executor) {
+        Check.checkNotNull("registry", registry);
+        Check.checkNotNull("dictionary", dictionary);
+        Check.checkTrue("maxResults must be positive", maxResults > 0);
+        Check.checkTrue("maxCandidates must not be less than maxResults", maxCandidates >= maxResults);
+        this.registry = registry;
+        this.dictionary = dictionary;
+        this.sort = sort;
+        this.maxResults = maxResults;
+        this.maxCandidates = maxCandidates;
+        this.executor = executor;
+    }
+
+    /**
+     * Performs a search. The result is identical to the result of
+     * {@link LuceneSearch#search(SearchQuery, int)}, with one exception: a
+     * sorted search in an index which is not ordered by rank sorts only the
+     * entries it fetches, while a refined result is taken from all sorted
+     * candidates.
+     *
+     * @param query
+     *            the query, not null. Copied, therefore it may be modified
+     *            afterwards.
+     * @return the result list, never null, may be empty.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public synchronized List<DictEntry> search(final SearchQuery query) throws IOException {
+        final SearchQuery q = new SearchQuery(query).trim();
+        q.validate();
+        if (q.dictType != dictionary.dte) {
+            throw new IllegalArgumentException("Cannot search " + dictionary + " with a " + q.dictType + " query");
+        }
+        collectPrefetch();
+        final List<DictEntry> result;
+        if (candidates != null && isRefinement(lastQuery, q)) {
+            // the same query matches all candidates
+            result = q.equals(lastQuery) ? candidates : filter(candidates, q, fields);
+            candidates = result;
+            refinedCount++;
+        } else {
+            final LuceneSearch search = registry.open(dictionary, sort);
+            try {
+                result = search.search(q, maxResults);
+                fields = search.getFields();
+            } finally {
+                search.close();
+            }
+            indexSearchCount++;
+            // when the result is not full then it contains all matching
+            // entries
+            candidates = result.size() < maxResults ? result : null;
+        }
+        lastQuery = q;
+        if (candidates == null) {
+            startPrefetch(q);
+        }
+        return new ArrayList<DictEntry>(result.subList(0, Math.min(maxResults, result.size())));
+    }
+
+    /**
+     * Picks up the prefetched candidates, or cancels the prefetch if it is
+     * not finished yet.
+     */
+    private void collectPrefetch() {
+        if (prefetch == null) {
+            return;
+        }
+        if (prefetch.isDone()) {
+            try {
+                final SearchResult r = prefetch.get();
+                if (!r.truncated && r.entries.size() < maxCandidates) {
+                    candidates = r.entries;
+                }
+            } catch (ExecutionException ex) {
+                // ignore, the index will be searched
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            prefetch.cancel(false);
+        }
+        prefetch = null;
+    }
+
+    private void startPrefetch(final SearchQuery q) {
+        if (executor == null) {
+            return;
+        }
+        final CancelToken token = new CancelToken();
+        final FutureTask<SearchResult> task = new FutureTask<SearchResult>(new Callable<SearchResult>() {
+
+            public SearchResult call() throws Exception {
+                final LuceneSearch search = registry.open(dictionary, sort);
+                try {
+                    return search.search(q, maxCandidates, token, 0, TimeUnit.MILLISECONDS);
+                } finally {
+                    search.close();
+                }
+            }
+        }) {
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                token.cancel();
+                return super.cancel(false);
+            }
+        };
+        prefetch = task;
+        executor.execute(task);
+    }
+
+    /**
+     * Checks if the new query matches a subset of entries matched by the
+     * previous query.
+     *
+     * @param previous
+     *            the previous query, may be null.
+     * @param query
+     *            the new query, not null.
+     * @return true if the new query refines the previous one.
+     */
+    static boolean isRefinement(final SearchQuery previous, final SearchQuery query) {
+        if (previous == null || previous.query == null || query.query == null || previous.query.length != query.query.length) {
+            return false;
+        }
+        // all other search criteria must be equal
+        final SearchQuery q = new SearchQuery(query);
+        q.query = previous.query;
+        q.romaji = previous.romaji;
+        if (!q.equals(previous)) {
+            return false;
+        }
+        for (int i = 0; i < query.query.length; i++) {
+            final String[] prev = previous.query[i].split("\\s+AND\\s+");
+            final String[] terms = query.query[i].split("\\s+AND\\s+");
+            if (prev.length != terms.length) {
+                return false;
+            }
+            for (int j = 0; j < terms.length; j++) {
+                if (!query.matcher.matches(prev[j].trim(), terms[j].trim())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static List<DictEntry> filter(final List<DictEntry> candidates, final SearchQuery query, final Set<String> fields) {
+        final List<DictEntry> result = new ArrayList<DictEntry>();
+        for (final DictEntry entry : candidates) {
+            if (query.dictType.matchesIndexed(entry, query, fields)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the previous results and cancels the prefetch. Should be called
+     * when the dictionary changes.
+     */
+    public synchronized void reset() {
+        if (prefetch != null) {
+            prefetch.cancel(false);
+            prefetch = null;
+        }
+        lastQuery = null;
+        candidates = null;
+    }
+
+    /**
+     * Returns the dictionary searched by this session.
+     *
+     * @return the dictionary, never null.
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Checks if the results are sorted.
+     *
+     * @return true if the results are sorted.
+     */
+    public boolean isSorted() {
+        return sort;
+    }
+
+    /**
+     * Returns the number of searches which were performed in the index.
+     *
+     * @return the index search count.
+     */
+    public synchronized int getIndexSearchCount() {
+        return indexSearchCount;
+    }
+
+    /**
+     * Returns the number of searches which were served by filtering the
+     * previous results.
+     *
+     * @return the refined search count.
+     */
+    public synchronized int getRefinedCount() {
+        return refinedCount;
+    }
+
+    /**
+     * Checks if the candidates of the last query have been prefetched.
+     *
+     * @return true if the prefetch is finished.
+     */
+    public synchronized boolean isPrefetched() {
+        return prefetch != null && prefetch.isDone();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "IncrementalSearch{" + dictionary + ", indexSearches=" + indexSearchCount + ", refined=" + refinedCount + "}";
+    }
+}
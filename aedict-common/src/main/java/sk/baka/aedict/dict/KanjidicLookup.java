@@ -0,0 +1,159 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Keeps all KANJIDIC entries in memory and looks them up by the kanji
+ * character, without the Lucene index. Only the plain kanji lookups are
+ * supported; the lookups by the stroke count, SKIP or radical must be
+ * searched in the Lucene index.
+ * <p/>
+ * Thread-safe: immutable.
+ *
+ * @author Martin Vysny
+ */
+public final class KanjidicLookup {
+
+    /**
+     * Maps the kanji to its entries, in the index order.
+     */
+    private final Map<String, List<DictEntry>> entries = new HashMap<String, List<DictEntry>>();
+    private final int size;
+
+    /**
+     * Creates the lookup.
+     *
+     * @param entries
+     *            the KANJIDIC entries, not null.
+     */
+    public KanjidicLookup(final Collection<? extends DictEntry> entries) {
+        for (final DictEntry entry : entries) {
+            add(entry.kanji, entry);
+        }
+        size = entries.size();
+    }
+
+    private KanjidicLookup(final List<String> kanji, final List<DictEntry> entries) {
+        for (int i = 0; i < kanji.size(); i++) {
+            add(kanji.get(i), entries.get(i));
+        }
+        size = entries.size();
+    }
+
+    private void add(final String kanji, final DictEntry entry) {
+        List<DictEntry> list = entries.get(kanji);
+        if (list == null) {
+            list = new ArrayList<DictEntry>(1);
+            entries.put(kanji, list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Loads all entries of given KANJIDIC Lucene index.
+     *
+     * @param directory
+     *            the Lucene index directory, not null.
+     * @return the lookup, never null.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public static KanjidicLookup load(final File directory) throws IOException {
+        final List<String> kanji = new ArrayList<String>();
+        final List<DictEntry> result = new ArrayList<DictEntry>();
+        final Directory dir = FSDirectory.open(directory);
+        try {
+            final IndexReader reader = IndexReader.open(dir, true);
+            try {
+                final FieldSelector selector = DictTypeEnum.Kanjidic.getFieldSelector(null);
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (!reader.isDeleted(doc)) {
+                        final Document document = reader.document(doc, selector);
+                        kanji.add(document.get("kanji"));
+                        // a broken entry is reported as an error entry, the
+                        // same way the Lucene search does
+                        result.add(DictTypeEnum.Kanjidic.tryGetEntry(document, (String) null));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            dir.close();
+        }
+        return new KanjidicLookup(kanji, result);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if given query may be answered by this lookup: a KANJIDIC query
+     * for a kanji, without the stroke count, SKIP or radical restrictions.
+     *
+     * @param query
+     *            the query, not null.
+     * @return true if the query may be searched.
+     */
+    public boolean isSupported(final SearchQuery query) {
+        return query.dictType == DictTypeEnum.Kanjidic && query.isJapanese && !query.requiresKanjidic() && query.query != null && query.query.length == 1;
+    }
+
+    /**
+     * Performs a search.
+     *
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @return the same result list as returned by
+     *         {@link LuceneSearch#search(SearchQuery, int)}; null if the query
+     *         cannot be answered by this lookup.
+     */
+    public List<DictEntry> search(final SearchQuery query, final int maxResults) {
+        if (!isSupported(query)) {
+            return null;
+        }
+        query.validate();
+        final List<DictEntry> found = entries.get(query.query[0].trim());
+        if (found == null) {
+            return new ArrayList<DictEntry>();
+        }
+        return new ArrayList<DictEntry>(found.subList(0, Math.max(0, Math.min(maxResults, found.size()))));
+    }
+}
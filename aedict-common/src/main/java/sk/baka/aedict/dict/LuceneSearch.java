@@ -17,25 +17,30 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package sk.baka.aedict.dict;
 
+import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.queryParser.ParseException;
-import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Searcher;
-import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 
 import sk.baka.aedict.util.IOExceptionWithCause;
@@ -43,6 +48,11 @@ import sk.baka.autils.MiscUtils;
 
 /**
  * Allows Lucene search for a query.
+ * <p/>
+ * Thread-safe: a single instance may be used to perform searches from
+ * multiple threads concurrently. The underlying {@link IndexSearcher} is
+ * shared; the queries are built by {@link DictTypeEnum#getLuceneQuery(SearchQuery)}
+ * for every search.
  * 
  * @author Martin Vysny
  */
@@ -51,7 +61,10 @@ public final class LuceneSearch implements Closeable {
     private final Directory directory;
     private final IndexReader reader;
     private final Searcher searcher;
-    private final QueryParser parser;
+    /**
+     * Names of fields present in the index.
+     */
+    private final Set<String> fields;
     public static final Version LUCENE_VERSION = Version.LUCENE_30;
     /**
      * The dictionary type.
@@ -61,6 +74,17 @@ public final class LuceneSearch implements Closeable {
      * if true then the result list is always sorted.
      */
     private final boolean sort;
+    /**
+     * If non-null then the index is owned by the {@link LuceneSearchRegistry}
+     * and must not be closed by this object.
+     */
+    private final LuceneSearchRegistry.Entry lease;
+    private volatile boolean closed = false;
+    /**
+     * Receives metrics of the searches, null if the searches are not
+     * measured.
+     */
+    private volatile SearchListener listener;
 
     /**
      * Creates the object and opens the index file.
@@ -75,12 +99,58 @@ public final class LuceneSearch implements Closeable {
      *             on I/O error.
      */
     public LuceneSearch(final DictTypeEnum dictType, final String dictionaryPath, final boolean sort) throws IOException {
+        this(dictType, dictionaryPath, sort, DirectoryModeEnum.Default);
+    }
+
+    /**
+     * Creates the object and opens the index file.
+     *
+     * @param dictType
+     *            the dictionary we will use for the search.
+     * @param dictionaryPath
+     *            overrides default dictionary location if non-null. An absolute
+     *            os-specific path, e.g. /sdcard/aedict/index.
+     * @param sort if true then the result list is always sorted.
+     * @param mode
+     *            the way the index files are accessed, not null.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public LuceneSearch(final DictTypeEnum dictType, final String dictionaryPath, final boolean sort, final DirectoryModeEnum mode) throws IOException {
         this.dictType = dictType;
-        directory = FSDirectory.open(new File(dictionaryPath != null ? dictionaryPath : dictType.getDefaultDictionaryPath()));
-        reader = IndexReader.open(directory, true);
+        directory = mode.open(new File(dictionaryPath != null ? dictionaryPath : dictType.getDefaultDictionaryPath()));
+        try {
+            reader = IndexReader.open(directory, true);
+        } catch (IOException ex) {
+            directory.close();
+            throw ex;
+        }
         searcher = new IndexSearcher(reader);
-        parser = new QueryParser(LUCENE_VERSION, "contents", new StandardAnalyzer(LUCENE_VERSION));
+        fields = getFieldNames(reader);
+        this.sort = sort;
+        lease = null;
+        listener = null;
+    }
+
+    /**
+     * Creates the object over an index leased from the
+     * {@link LuceneSearchRegistry}.
+     *
+     * @param dictType
+     *            the dictionary we will use for the search.
+     * @param lease
+     *            the leased index, not null.
+     * @param sort if true then the result list is always sorted.
+     */
+    LuceneSearch(final DictTypeEnum dictType, final LuceneSearchRegistry.Entry lease, final boolean sort) {
+        this.dictType = dictType;
+        this.lease = lease;
+        directory = lease.directory;
+        reader = lease.reader;
+        searcher = lease.searcher;
+        fields = lease.fields;
         this.sort = sort;
+        listener = lease.registry.getListener();
     }
 
     /**
@@ -103,51 +173,127 @@ public final class LuceneSearch implements Closeable {
      *            the query to search for.
      * @param maxResults
      *            the maximum number of results to list
-     * @return a result list, never null, may be empty. The list is sorted depending on the value of {@link Config#isSorted()} configuration option.
+     * @param sort
+     *            if true then the result list is sorted.
+     * @param token
+     *            terminates the search when cancelled, may be null.
+     * @param deadline
+     *            terminates the search when {@link System#nanoTime()}
+     *            reaches this value, {@link FilteringCollector#NO_DEADLINE}
+     *            if the search is not limited.
+     * @return the search result, never null.
      * @throws IOException
      *             on I/O error.
      */
-    private List<DictEntry> searchInternal(final SearchQuery query, final int maxResults) throws IOException {
+    private SearchResult searchInternal(final SearchQuery query, final int maxResults, final boolean sort, final CancelToken token, final long deadline) throws IOException {
         query.validate();
+        // read the listener only once, the search is either measured as a
+        // whole or not at all
+        final SearchListener l = listener;
+        final SearchMetrics metrics = l == null ? null : new SearchMetrics(dictType, query.matcher, SearchSourceEnum.Index);
+        final long start = metrics == null ? 0 : System.nanoTime();
         final List<DictEntry> r = new ArrayList<DictEntry>();
-        final String[] queries = dictType.getLuceneQuery(query);
-        // 5000 is just an approximate value.
-        // we are searching for an exact match. We cannot simply grab the first
-        // "maxResults" results and filter out non-exact results - we can filter
-        // out all results this way, and the real, exact matches, may remain
-        // unretrieved by Lucene. TODO perhaps a better Lucene query might help.
-        final int maxLuceneResults = (query.matcher != MatcherEnum.Substring) && (query.dictType == DictTypeEnum.Edict) && (!query.isJapanese) ? 5000 : maxResults;
-        int resultsToFind = maxLuceneResults;
-        for (final String q : queries) {
-            // gradually walk through the queries and fill the result list.
-            final Query parsedQuery;
+        final Query[] queries = dictType.getLuceneQuery(query, fields);
+        final boolean isExact = dictType.isExact(query, fields);
+        final long parsed = metrics == null ? 0 : System.nanoTime();
+        // the documents are filtered while being collected, therefore we do
+        // not need to fetch a large number of Lucene results and then filter
+        // them. Walk the queries in given order (e.g. the common EDICT
+        // entries first) and stop as soon as the result list is full.
+        final FilteringCollector collector = new FilteringCollector(dictType, query, isExact, r, maxResults, token, deadline);
+        collector.setMetrics(metrics);
+        for (final Query q : queries) {
+            if (q == null) {
+                // nothing to search for
+                continue;
+            }
+            if (collector.checkTruncated()) {
+                break;
+            }
             try {
-                parsedQuery = parser.parse(q);
-            } catch (ParseException e) {
-                // not expected - the SearchQuery object should produce valid
-                // query strings... indicates a bug in Aedict code.
-                throw new RuntimeException(e);
-            }
-            final TopDocs result = searcher.search(parsedQuery, null, resultsToFind);
-            for (final ScoreDoc sd : result.scoreDocs) {
-                final Document doc = searcher.doc(sd.doc);
-                final DictEntry entry = dictType.tryGetEntry(doc, query);
-                if (entry != null) {
-                    r.add(entry);
-                    if (r.size() >= maxResults) {
-                        break;
-                    }
-                }
+                searcher.search(q, collector);
+            } catch (FilteringCollector.Terminated ex) {
+                // enough results, or cancelled
             }
-            resultsToFind = maxLuceneResults - r.size();
-            if (resultsToFind <= 0) {
+            if (collector.isFull() || collector.isTruncated()) {
                 break;
             }
         }
-        if (sort) {
-            Collections.sort(r);
+        final long searched = metrics == null ? 0 : System.nanoTime();
+        if (sort && !dictType.isRanked(fields)) {
+            Ranking.sort(r);
+        }
+        if (metrics != null) {
+            final long end = System.nanoTime();
+            metrics.add(SearchPhaseEnum.Parse, parsed - start);
+            // the collector phases were measured while searching
+            metrics.add(SearchPhaseEnum.Search, searched - parsed - metrics.getNanos(SearchPhaseEnum.Load) - metrics.getNanos(SearchPhaseEnum.Decode) - metrics.getNanos(SearchPhaseEnum.Filter));
+            metrics.add(SearchPhaseEnum.Sort, end - searched);
+            metrics.add(SearchPhaseEnum.Total, end - start);
+            metrics.hitsKept = r.size();
+            l.searchPerformed(metrics);
+        }
+        return new SearchResult(r, collector.isTruncated());
+    }
+
+    /**
+     * Registers a listener which receives metrics of every search performed
+     * by this object: the {@link #search(SearchQuery, int) searches} and
+     * their variants, the searches served from the result cache, the
+     * {@link #searchBatch(List, int) batches} and the
+     * {@link #searchCursor(SearchQuery) cursors}, see
+     * {@link SearchSourceEnum}. When no listener is registered, the searches
+     * are not measured at all. A search object leased from the
+     * {@link LuceneSearchRegistry} starts with the
+     * {@link LuceneSearchRegistry#setListener(SearchListener) listener of the
+     * registry}.
+     *
+     * @param listener
+     *            the listener, null to stop measuring.
+     */
+    public void setListener(final SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the registered listener.
+     *
+     * @return the listener, null if none is registered.
+     */
+    public SearchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns names of all fields present in the index.
+     *
+     * @return an unmodifiable set of field names.
+     */
+    Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Looks up given query in the result cache and reports a hit to the
+     * listener.
+     *
+     * @param key
+     *            the cache key, not null.
+     * @param query
+     *            the query.
+     * @return the cached result, null if the result is not cached.
+     */
+    private List<DictEntry> getCached(final SearchResultCache.Key key, final SearchQuery query) {
+        final SearchListener l = listener;
+        final long start = l == null ? 0 : System.nanoTime();
+        final List<DictEntry> cached = lease.registry.getResultCache().get(key);
+        if (cached != null && l != null) {
+            final SearchMetrics metrics = new SearchMetrics(dictType, query.matcher, SearchSourceEnum.Cache);
+            metrics.add(SearchPhaseEnum.Total, System.nanoTime() - start);
+            metrics.hitsKept = cached.size();
+            l.searchPerformed(metrics);
         }
-        return r;
+        return cached;
     }
 
     /**
@@ -162,21 +308,427 @@ public final class LuceneSearch implements Closeable {
      *             on I/O error.
      */
     public List<DictEntry> search(final SearchQuery query, final int maxResults) throws IOException {
+        return search(query, maxResults, sort);
+    }
+
+    /**
+     * Performs a search and returns the best results only. Unlike
+     * {@link #search(SearchQuery, int)}, the result list is always sorted,
+     * however only the returned entries are ordered.
+     *
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of matching entries to retrieve.
+     * @param count
+     *            the number of best entries to return.
+     * @return at most count best entries out of maxResults matching entries,
+     *         sorted. Never null, may be empty.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public List<DictEntry> searchTop(final SearchQuery query, final int maxResults, final int count) throws IOException {
+        final List<DictEntry> result = search(query, maxResults, false);
+        if (dictType.isRanked(fields)) {
+            // already in the rank order
+            return new ArrayList<DictEntry>(result.subList(0, Math.max(0, Math.min(count, result.size()))));
+        }
+        return Ranking.top(result, count);
+    }
+
+    private List<DictEntry> search(final SearchQuery query, final int maxResults, final boolean sort) throws IOException {
+        final SearchResultCache.Key key = newCacheKey(query, maxResults, sort);
+        if (key != null) {
+            final List<DictEntry> cached = getCached(key, query);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final List<DictEntry> result;
         try {
-            return searchInternal(query, maxResults);
+            result = searchInternal(query, maxResults, sort, null, FilteringCollector.NO_DEADLINE).entries;
         } catch (IOException ex) {
-            // catch the "read past EOF" IO exception which indicates that the
-            // dictionary files are corrupted. See
-            // http://code.google.com/p/aedict/issues/detail?id=55 for details
-            if ("read past EOF".equals(ex.getMessage())) {
-                throw new IOExceptionWithCause(DICT_FILES_CORRUPTED + ": " + ex.getMessage(), ex);
+            throw wrapCorrupted(ex);
+        }
+        if (key != null) {
+            lease.registry.cacheResult(lease, key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Performs a search which may be cancelled and which is limited in time.
+     * When the token is cancelled or the time budget is spent, the search is
+     * terminated and the entries found so far are returned as a
+     * {@link SearchResult#truncated truncated} result. Only complete results
+     * are cached.
+     *
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @param token
+     *            terminates the search when cancelled. May be null.
+     * @param budget
+     *            the maximum duration of the search. Zero or negative value
+     *            means no limit.
+     * @param unit
+     *            the budget unit, not null.
+     * @return the search result, never null. The entries are sorted depending
+     *         on the value of the sort flag given to the constructor.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public SearchResult search(final SearchQuery query, final int maxResults, final CancelToken token, final long budget, final TimeUnit unit) throws IOException {
+        return search(query, maxResults, token, toDeadline(budget, unit));
+    }
+
+    private static long toDeadline(final long budget, final TimeUnit unit) {
+        return budget <= 0 ? FilteringCollector.NO_DEADLINE : System.nanoTime() + unit.toNanos(budget);
+    }
+
+    private SearchResult search(final SearchQuery query, final int maxResults, final CancelToken token, final long deadline) throws IOException {
+        final SearchResultCache.Key key = newCacheKey(query, maxResults, sort);
+        if (key != null) {
+            final List<DictEntry> cached = getCached(key, query);
+            if (cached != null) {
+                return new SearchResult(cached, false);
             }
-            throw ex;
         }
+        final SearchResult result;
+        try {
+            result = searchInternal(query, maxResults, sort, token, deadline);
+        } catch (IOException ex) {
+            throw wrapCorrupted(ex);
+        }
+        if (key != null && !result.truncated) {
+            lease.registry.cacheResult(lease, key, result.entries);
+        }
+        return result;
     }
+
+    /**
+     * Performs a search asynchronously, in given executor. The search is
+     * cancelled by {@link Future#cancel(boolean) cancelling} the future or the
+     * token; the searching thread is never interrupted. The time budget is
+     * measured from this call, therefore it includes the time the task spends
+     * waiting in the executor queue.
+     * <p/>
+     * This object must not be closed before the future completes.
+     *
+     * @param query
+     *            the query to search for. Must not be modified until the
+     *            future completes.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @param token
+     *            terminates the search when cancelled. May be null.
+     * @param budget
+     *            the maximum duration of the search. Zero or negative value
+     *            means no limit.
+     * @param unit
+     *            the budget unit, not null.
+     * @param executor
+     *            runs the search, not null.
+     * @return the future search result, never null. Fails with an
+     *         {@link IOException} on I/O error.
+     */
+    public Future<SearchResult> searchAsync(final SearchQuery query, final int maxResults, final CancelToken token, final long budget, final TimeUnit unit, final Executor executor) {
+        final long deadline = toDeadline(budget, unit);
+        final CancelToken t = token == null ? new CancelToken() : token;
+        final FutureTask<SearchResult> result = new FutureTask<SearchResult>(new Callable<SearchResult>() {
+
+            public SearchResult call() throws Exception {
+                return search(query, maxResults, t, deadline);
+            }
+        }) {
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                t.cancel();
+                // an interrupt would close the NIO channels of the index
+                return super.cancel(false);
+            }
+        };
+        executor.execute(result);
+        return result;
+    }
+
+    /**
+     * Creates a key for the {@link SearchResultCache}.
+     *
+     * @return the key, or null if the results are not cached (the index is
+     *         not leased from the registry or the cache is disabled).
+     */
+    private SearchResultCache.Key newCacheKey(final SearchQuery query, final int maxResults, final boolean sort) {
+        if (lease == null || !lease.registry.getResultCache().isEnabled()) {
+            return null;
+        }
+        return new SearchResultCache.Key(lease.dictionary, query, maxResults, sort);
+    }
+
+    /**
+     * Catches the "read past EOF" IO exception which indicates that the
+     * dictionary files are corrupted. See
+     * http://code.google.com/p/aedict/issues/detail?id=55 for details
+     *
+     * @param ex
+     *            the exception
+     * @return an exception with a more descriptive message, or the original
+     *         exception.
+     */
+    private static IOException wrapCorrupted(final IOException ex) {
+        if ("read past EOF".equals(ex.getMessage())) {
+            return new IOExceptionWithCause(DICT_FILES_CORRUPTED + ": " + ex.getMessage(), ex);
+        }
+        return ex;
+    }
+    /**
+     * Performs multiple searches at once. The index is traversed as few times
+     * as possible and a document matched by multiple queries is loaded and
+     * parsed only once.
+     *
+     * @param queries
+     *            the queries to search for.
+     * @param maxResults
+     *            the maximum number of results to list, per query.
+     * @return a result list for each query, in the order of the queries. Each
+     *         list is identical to the list returned by
+     *         {@link #search(SearchQuery, int)}.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public List<List<DictEntry>> searchBatch(final List<SearchQuery> queries, final int maxResults) throws IOException {
+        final List<List<DictEntry>> result = new ArrayList<List<DictEntry>>(queries.size());
+        // only the queries not found in the cache are searched
+        final List<SearchQuery> uncached = new ArrayList<SearchQuery>(queries.size());
+        final List<SearchResultCache.Key> keys = new ArrayList<SearchResultCache.Key>(queries.size());
+        for (final SearchQuery q : queries) {
+            final SearchResultCache.Key key = newCacheKey(q, maxResults, sort);
+            final List<DictEntry> cached = key == null ? null : getCached(key, q);
+            result.add(cached);
+            if (cached == null) {
+                uncached.add(q);
+                keys.add(key);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return result;
+        }
+        final SearchListener l = listener;
+        final long start = l == null ? 0 : System.nanoTime();
+        final List<List<DictEntry>> found;
+        try {
+            found = new BatchSearch(dictType, searcher, reader, fields, uncached, maxResults).search();
+        } catch (IOException ex) {
+            throw wrapCorrupted(ex);
+        }
+        final long searched = l == null ? 0 : System.nanoTime();
+        for (int i = 0, j = 0; i < result.size(); i++) {
+            if (result.get(i) != null) {
+                continue;
+            }
+            final List<DictEntry> r = found.get(j);
+            if (sort && !dictType.isRanked(fields)) {
+                Ranking.sort(r);
+            }
+            if (keys.get(j) != null) {
+                lease.registry.cacheResult(lease, keys.get(j), r);
+            }
+            result.set(i, r);
+            j++;
+        }
+        if (l != null) {
+            // the batch is measured as a whole: the queries are parsed and
+            // the documents are loaded while searching
+            final SearchMetrics metrics = new SearchMetrics(dictType, getMatcher(uncached), SearchSourceEnum.Batch);
+            final long end = System.nanoTime();
+            metrics.add(SearchPhaseEnum.Search, searched - start);
+            metrics.add(SearchPhaseEnum.Sort, end - searched);
+            metrics.add(SearchPhaseEnum.Total, end - start);
+            for (final List<DictEntry> r : found) {
+                metrics.hitsKept += r.size();
+            }
+            l.searchPerformed(metrics);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the matcher shared by all given queries.
+     *
+     * @param queries
+     *            the queries, not empty.
+     * @return the matcher, null if the queries have different matchers.
+     */
+    private static MatcherEnum getMatcher(final List<SearchQuery> queries) {
+        final MatcherEnum result = queries.get(0).matcher;
+        for (final SearchQuery q : queries) {
+            if (q.matcher != result) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Performs a lazy search. The documents are loaded and parsed only when
+     * requested by {@link SearchCursor#next()}; the results are not sorted.
+     * A cursor obtained from a search leased from the
+     * {@link LuceneSearchRegistry} keeps the index open until the cursor is
+     * closed; otherwise the cursor must be closed before this object is
+     * closed.
+     *
+     * @param query
+     *            the query to search for.
+     * @return the cursor, never null. Must be closed.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public SearchCursor searchCursor(final SearchQuery query) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        query.validate();
+        final SearchListener l = listener;
+        if (l == null) {
+            return new SearchCursor(dictType, query, searcher, reader, dictType.getLuceneQuery(query, fields), dictType.isExact(query, fields), lease, null, null);
+        }
+        final long start = System.nanoTime();
+        final Query[] queries = dictType.getLuceneQuery(query, fields);
+        final boolean isExact = dictType.isExact(query, fields);
+        final SearchMetrics metrics = new SearchMetrics(dictType, query.matcher, SearchSourceEnum.Cursor);
+        final long parsed = System.nanoTime() - start;
+        metrics.add(SearchPhaseEnum.Parse, parsed);
+        metrics.add(SearchPhaseEnum.Total, parsed);
+        return new SearchCursor(dictType, query, searcher, reader, queries, isExact, lease, l, metrics);
+    }
+
+    /**
+     * Warms up the index, so that the first search does not pay for paging
+     * in the index files. The whole term dictionary is walked and the stored
+     * fields of about {@value #WARM_DOCUMENTS} documents spread over the index
+     * are loaded; optionally, a bundled list of popular queries is searched
+     * (which also fills the result cache if this object is leased from the
+     * {@link LuceneSearchRegistry}). The norms are not loaded as the results
+     * are never scored.
+     * <p/>
+     * Intended to be called in a background thread, e.g. when the
+     * application starts or after a dictionary has been downloaded.
+     *
+     * @param replayQueries
+     *            if true then the popular queries are searched as well.
+     * @return the duration of the warm-up in milliseconds.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public long warm(final boolean replayQueries) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            final TermEnum terms = reader.terms();
+            try {
+                while (terms.next()) {
+                    // just page the term dictionary in
+                }
+            } finally {
+                terms.close();
+            }
+            final FieldSelector selector = dictType.getFieldSelector(null);
+            final int maxDoc = reader.maxDoc();
+            final int stride = Math.max(1, maxDoc / WARM_DOCUMENTS);
+            for (int doc = 0; doc < maxDoc; doc += stride) {
+                if (!reader.isDeleted(doc)) {
+                    reader.document(doc, selector);
+                }
+            }
+        } catch (IOException ex) {
+            throw wrapCorrupted(ex);
+        }
+        if (replayQueries) {
+            for (final SearchQuery q : getPopularQueries(dictType)) {
+                search(q, 100);
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+    /**
+     * The number of documents loaded by {@link #warm(boolean)}.
+     */
+    private static final int WARM_DOCUMENTS = 1024;
+
+    /**
+     * Returns the popular queries for given dictionary type, bundled in the
+     * <code>popular-queries.txt</code> resource. Each line of the resource
+     * holds a dictionary type, "jp" or "en", a matcher and the query,
+     * separated by a tab.
+     *
+     * @param dictType
+     *            the dictionary type
+     * @return the queries, never null, may be empty.
+     */
+    static List<SearchQuery> getPopularQueries(final DictTypeEnum dictType) {
+        final List<SearchQuery> result = new ArrayList<SearchQuery>();
+        final InputStream in = LuceneSearch.class.getResourceAsStream("popular-queries.txt");
+        if (in == null) {
+            return result;
+        }
+        try {
+            final BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            for (String line = r.readLine(); line != null; line = r.readLine()) {
+                if (line.trim().length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] cols = line.split("\t");
+                if (cols.length != 4) {
+                    throw new IllegalStateException("Invalid popular query: " + line);
+                }
+                if (DictTypeEnum.valueOf(cols[0]) != dictType) {
+                    continue;
+                }
+                final SearchQuery q = new SearchQuery(dictType);
+                q.isJapanese = "jp".equals(cols[1]);
+                q.matcher = MatcherEnum.valueOf(cols[2]);
+                q.query = new String[]{cols[3]};
+                result.add(q);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            MiscUtils.closeQuietly(in);
+        }
+        return result;
+    }
+
+    /**
+     * Returns names of all fields present in given index.
+     *
+     * @param reader
+     *            the index reader, not null.
+     * @return an unmodifiable set of field names.
+     */
+    static Set<String> getFieldNames(final IndexReader reader) {
+        return Collections.unmodifiableSet(new HashSet<String>(reader.getFieldNames(IndexReader.FieldOption.ALL)));
+    }
+
     public static String DICT_FILES_CORRUPTED = "It seems that the dictionary files became corrupted. Please try to delete them and re-download them. Also please check your sd-card for errors.";
 
-    public void close() throws IOException {
+    /**
+     * Closes the index. If the index has been leased from the
+     * {@link LuceneSearchRegistry} then it is returned to the registry
+     * instead.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (lease != null) {
+            lease.registry.release(lease);
+            return;
+        }
         searcher.close();
         reader.close();
         directory.close();
@@ -190,14 +742,15 @@ public final class LuceneSearch implements Closeable {
      *            the query
      * @param dictionaryPath
      *            overrides default dictionary location if non-null. An absolute
-     *            os-specific path, e.g. /sdcard/aedict/index.
+     *            os-specific path, e.g. /sdcard/aedict/index. If null then the
+     *            index is leased from the {@link LuceneSearchRegistry#INSTANCE}.
      * @param sort if true then the result list will be sorted.
      * @return a result list, never null, may be empty. The list is sorted depending on the value of {@link Config#isSorted()} configuration option.
      * @throws IOException
      *             on I/O error.
      */
     public static List<DictEntry> singleSearch(final SearchQuery query, final String dictionaryPath, final boolean sort) throws IOException {
-        final LuceneSearch s = new LuceneSearch(query.dictType, dictionaryPath, sort);
+        final LuceneSearch s = dictionaryPath == null ? LuceneSearchRegistry.INSTANCE.open(new Dictionary(query.dictType, null), sort) : new LuceneSearch(query.dictType, dictionaryPath, sort);
         try {
             return s.search(query);
         } finally {
@@ -0,0 +1,784 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * A process-wide registry of opened Lucene indices. Opening an index (the
+ * directory, the reader and the searcher) is the most expensive part of a
+ * search, therefore the registry keeps the indices open between searches and
+ * hands out {@link LuceneSearch} instances which share the opened index. The
+ * index is reference-counted: it is closed only after all leased
+ * {@link LuceneSearch} instances are {@link LuceneSearch#close() closed} and
+ * the index stays idle for {@link #getIdleTimeout()} milliseconds.
+ * <p/>
+ * The index is opened using a {@link DirectoryModeEnum} which is either
+ * selected per dictionary or chosen automatically: indices are copied to the
+ * heap as long as all copies fit into the {@link #getMemoryBudget() memory
+ * budget}, the other indices are memory-mapped.
+ * <p/>
+ * The search results are cached in a {@link #getResultCache() result cache}
+ * which is cleared when an index is invalidated.
+ * <p/>
+ * Thread-safe. The indices are opened and closed outside of the registry lock,
+ * so that a slow open (e.g. a copy of the index to the heap) does not block
+ * searches in other, already opened indices.
+ *
+ * @author Martin Vysny
+ */
+public class LuceneSearchRegistry {
+
+    /**
+     * The default idle timeout in milliseconds.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 2 * 60 * 1000;
+    /**
+     * The registry instance used by Aedict.
+     */
+    public static final LuceneSearchRegistry INSTANCE = new LuceneSearchRegistry();
+    /**
+     * Maps a dictionary to its opened index.
+     */
+    private final Map<Dictionary, Entry> entries = new HashMap<Dictionary, Entry>();
+    /**
+     * Explicitly selected directory modes. Dictionaries not present in this
+     * map use a mode chosen by {@link DirectoryModeEnum#choose(long, long)}.
+     */
+    private final Map<Dictionary, DirectoryModeEnum> modes = new HashMap<Dictionary, DirectoryModeEnum>();
+    private long memoryBudget = DirectoryModeEnum.getDefaultMemoryBudget();
+    /**
+     * The heap occupied by the indices {@link DirectoryModeEnum#Ram copied to
+     * the heap}, including indices being opened and invalidated indices which
+     * are still leased.
+     */
+    private long heapUsage = 0;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int openCount = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private final SearchResultCache resultCache = new SearchResultCache();
+    /**
+     * Passed to the leased search objects, may be null.
+     */
+    private SearchListener listener = null;
+    /**
+     * Last known versions of the dictionaries, see
+     * {@link #updateVersions(DictionaryVersions)}.
+     */
+    private final Map<Dictionary, String> versions = new HashMap<Dictionary, String>();
+    /**
+     * Counts the invalidations, see {@link #getGeneration(Dictionary)}.
+     */
+    private long invalidations = 0;
+    /**
+     * Maps the dictionary to the value of {@link #invalidations} when it was
+     * last {@link #invalidate(Dictionary) invalidated}.
+     */
+    private final Map<Dictionary, Long> invalidated = new HashMap<Dictionary, Long>();
+    /**
+     * The value of {@link #invalidations} when all indices were last
+     * {@link #invalidateAll() invalidated}.
+     */
+    private long allInvalidated = 0;
+    /**
+     * Closes idle indices. Created lazily.
+     */
+    private Timer timer = null;
+    /**
+     * True if an idle check is scheduled on the {@link #timer}. At most one
+     * idle check is pending at any time.
+     */
+    private boolean idleCheckScheduled = false;
+    /**
+     * The first failure to close an index in the idle check, reported by the
+     * next {@link #closeIdle(boolean)}.
+     */
+    private IOException idleCheckFailure = null;
+
+    /**
+     * Leases a search object for given dictionary. The index is opened if
+     * necessary. The caller is responsible for closing the search object - the
+     * index itself is not closed but is returned to this registry.
+     *
+     * @param dictionary
+     *            the dictionary to search in, not null.
+     * @param sort
+     *            if true then the result list is always sorted.
+     * @return the search object, never null.
+     * @throws IOException
+     *             if the index fails to open.
+     */
+    public LuceneSearch open(final Dictionary dictionary, final boolean sort) throws IOException {
+        Check.checkNotNull("dictionary", dictionary);
+        return new LuceneSearch(dictionary.dte, lease(dictionary), sort);
+    }
+
+    /**
+     * Opens the index of given dictionary and {@link LuceneSearch#warm(boolean)
+     * warms} it up. The index stays open until it is idle for too long.
+     *
+     * @param dictionary
+     *            the dictionary to warm up, not null.
+     * @param sort
+     *            the popular queries are cached for searches with this sort
+     *            flag.
+     * @param replayQueries
+     *            if true then the popular queries are searched as well.
+     * @return the duration of the warm-up in milliseconds, including the
+     *         time needed to open the index.
+     * @throws IOException
+     *             if the index fails to open.
+     */
+    public long warm(final Dictionary dictionary, final boolean sort, final boolean replayQueries) throws IOException {
+        final long start = System.currentTimeMillis();
+        final LuceneSearch search = open(dictionary, sort);
+        try {
+            search.warm(replayQueries);
+        } finally {
+            search.close();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Returns the location of the index files of given dictionary. Defaults
+     * to {@link Dictionary#getDictionaryLocation()}.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @return the index directory, not null.
+     */
+    protected File getIndexLocation(final Dictionary dictionary) {
+        return dictionary.getDictionaryLocation();
+    }
+
+    private Entry lease(final Dictionary dictionary) throws IOException {
+        while (true) {
+            final File location;
+            final DirectoryModeEnum selected;
+            final long generation;
+            synchronized (this) {
+                final Entry entry = entries.get(dictionary);
+                if (entry != null) {
+                    hitCount++;
+                    entry.refCount++;
+                    return entry;
+                }
+                missCount++;
+                location = getIndexLocation(dictionary);
+                selected = modes.get(dictionary);
+                generation = getGeneration(dictionary);
+            }
+            final long size = selected == null || selected == DirectoryModeEnum.Ram ? DirectoryModeEnum.getIndexSize(location) : 0;
+            final DirectoryModeEnum mode;
+            final long heapBytes;
+            synchronized (this) {
+                // charge the copy before it is made, so that concurrently
+                // opened indices do not exceed the budget
+                mode = selected != null ? selected : DirectoryModeEnum.choose(size, memoryBudget - heapUsage);
+                heapBytes = mode == DirectoryModeEnum.Ram ? size : 0;
+                heapUsage += heapBytes;
+            }
+            final Entry opened;
+            try {
+                opened = new Entry(this, dictionary, location, mode, heapBytes);
+            } catch (IOException ex) {
+                uncharge(heapBytes);
+                throw ex;
+            } catch (RuntimeException ex) {
+                uncharge(heapBytes);
+                throw ex;
+            }
+            final Entry winner;
+            synchronized (this) {
+                openCount++;
+                winner = entries.get(dictionary);
+                if (winner == null && generation == getGeneration(dictionary)) {
+                    opened.refCount++;
+                    entries.put(dictionary, opened);
+                    return opened;
+                }
+                if (winner != null) {
+                    winner.refCount++;
+                }
+            }
+            // another thread opened the index first, or the index has been
+            // invalidated while being opened and has to be opened anew.
+            opened.close();
+            if (winner != null) {
+                return winner;
+            }
+        }
+    }
+
+    /**
+     * Acquires an additional lease of an already leased entry, e.g. for a
+     * {@link SearchCursor} which may outlive its {@link LuceneSearch}. The
+     * lease must be returned by {@link #release(Entry)}.
+     *
+     * @param entry
+     *            the leased entry.
+     */
+    synchronized void retain(final Entry entry) {
+        if (entry.refCount <= 0) {
+            throw new IllegalStateException("Not leased: " + entry.dictionary);
+        }
+        entry.refCount++;
+    }
+
+    /**
+     * Returns the lease back to the registry. Invoked by
+     * {@link LuceneSearch#close()}.
+     *
+     * @param entry
+     *            the leased entry.
+     */
+    void release(final Entry entry) throws IOException {
+        synchronized (this) {
+            if (entry.refCount <= 0) {
+                throw new IllegalStateException("Not leased: " + entry.dictionary);
+            }
+            entry.refCount--;
+            if (entry.refCount > 0) {
+                return;
+            }
+            entry.lastReleased = System.currentTimeMillis();
+            if (!entry.isInvalid) {
+                scheduleIdleCheck(idleTimeout);
+                return;
+            }
+        }
+        entry.close();
+    }
+
+    /**
+     * Schedules the idle check, unless it is already scheduled.
+     *
+     * @param delay
+     *            the delay in milliseconds.
+     */
+    private void scheduleIdleCheck(final long delay) {
+        if (idleCheckScheduled) {
+            return;
+        }
+        if (timer == null) {
+            timer = new Timer("LuceneSearchRegistry", true);
+        }
+        idleCheckScheduled = true;
+        timer.schedule(new TimerTask() {
+
+            @Override
+            public void run() {
+                checkIdle();
+            }
+        }, delay);
+    }
+
+    /**
+     * Invoked by the {@link #timer}: closes the idle indices and schedules the
+     * next check if there are unused indices which are not idle yet.
+     */
+    private void checkIdle() {
+        final List<Entry> idle;
+        synchronized (this) {
+            idleCheckScheduled = false;
+            idle = removeIdle(false);
+            long next = -1;
+            for (final Entry entry : entries.values()) {
+                if (entry.refCount == 0) {
+                    final long delay = entry.lastReleased + idleTimeout - System.currentTimeMillis();
+                    next = next < 0 ? delay : Math.min(next, delay);
+                }
+            }
+            if (next >= 0) {
+                scheduleIdleCheck(next);
+            }
+        }
+        try {
+            close(idle);
+        } catch (IOException ex) {
+            synchronized (this) {
+                if (idleCheckFailure == null) {
+                    idleCheckFailure = ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregisters indices which were not used for at least
+     * {@link #getIdleTimeout()} milliseconds. The caller is responsible for
+     * closing them.
+     */
+    private List<Entry> removeIdle(final boolean force) {
+        final List<Entry> idle = new ArrayList<Entry>();
+        final long now = System.currentTimeMillis();
+        for (final Iterator<Entry> i = entries.values().iterator(); i.hasNext();) {
+            final Entry entry = i.next();
+            if (entry.refCount == 0 && (force || now - entry.lastReleased >= idleTimeout)) {
+                i.remove();
+                idle.add(entry);
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Closes indices which were not used for at least
+     * {@link #getIdleTimeout()} milliseconds. Indices are closed automatically
+     * in the background as well; a failure to close an index in the
+     * background is reported by this method.
+     *
+     * @param force
+     *            if true then all currently unused indices are closed,
+     *            regardless of the timeout.
+     * @throws IOException
+     *             if an index fails to close.
+     */
+    public void closeIdle(final boolean force) throws IOException {
+        final List<Entry> idle;
+        final IOException failure;
+        synchronized (this) {
+            idle = removeIdle(force);
+            failure = idleCheckFailure;
+            idleCheckFailure = null;
+        }
+        close(idle);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes all given indices.
+     *
+     * @param entries
+     *            the indices to close.
+     * @throws IOException
+     *             the first failure to close an index.
+     */
+    private static void close(final List<Entry> entries) throws IOException {
+        IOException failure = null;
+        for (final Entry entry : entries) {
+            try {
+                entry.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Invalidates an index of given dictionary, e.g. because the dictionary is
+     * going to be deleted or it has been re-downloaded. The index is closed
+     * immediately if it is not used, otherwise it is closed when the last
+     * lease is returned. Next {@link #open(Dictionary, boolean)} will open the
+     * index anew.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @throws IOException
+     *             if the unused index fails to close.
+     */
+    public void invalidate(final Dictionary dictionary) throws IOException {
+        final List<Entry> unused = new ArrayList<Entry>();
+        synchronized (this) {
+            final Entry entry = entries.remove(dictionary);
+            if (entry != null) {
+                invalidate(entry, unused);
+            }
+            resultCache.invalidate(dictionary);
+            invalidated.put(dictionary, ++invalidations);
+        }
+        close(unused);
+    }
+
+    /**
+     * Invalidates all indices. See {@link #invalidate(Dictionary)} for
+     * details.
+     *
+     * @throws IOException
+     *             if an unused index fails to close.
+     */
+    public void invalidateAll() throws IOException {
+        final List<Entry> unused = new ArrayList<Entry>();
+        synchronized (this) {
+            for (final Entry entry : entries.values()) {
+                invalidate(entry, unused);
+            }
+            entries.clear();
+            resultCache.clear();
+            allInvalidated = ++invalidations;
+        }
+        close(unused);
+    }
+
+    /**
+     * Returns the generation of the files of given dictionary. The
+     * generation changes whenever the dictionary is
+     * {@link #invalidate(Dictionary) invalidated}, therefore the data loaded
+     * from the dictionary files is stale if the generation has changed since
+     * the data was loaded.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @return the generation.
+     */
+    synchronized long getGeneration(final Dictionary dictionary) {
+        final Long generation = invalidated.get(dictionary);
+        return generation == null ? allInvalidated : Math.max(generation, allInvalidated);
+    }
+
+    /**
+     * Notifies the registry about current versions of the dictionaries, e.g.
+     * after a dictionary has been downloaded. A dictionary whose version
+     * differs from the previously known version is
+     * {@link #invalidate(Dictionary) invalidated}.
+     *
+     * @param dv
+     *            the versions, not null.
+     * @throws IOException
+     *             if an unused index fails to close.
+     */
+    public void updateVersions(final DictionaryVersions dv) throws IOException {
+        final List<Dictionary> changed = new ArrayList<Dictionary>();
+        synchronized (this) {
+            for (final Map.Entry<Dictionary, String> e : dv.versions.entrySet()) {
+                final String old = versions.put(e.getKey(), e.getValue());
+                if (old != null && !old.equals(e.getValue())) {
+                    changed.add(e.getKey());
+                }
+            }
+        }
+        for (final Dictionary dictionary : changed) {
+            invalidate(dictionary);
+        }
+    }
+
+    /**
+     * Returns the cache of search results.
+     *
+     * @return the cache, never null.
+     */
+    public SearchResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Caches a search result, unless the index it was computed from has been
+     * invalidated in the meantime.
+     *
+     * @param entry
+     *            the index the result was computed from.
+     * @param key
+     *            the cache key.
+     * @param result
+     *            the result.
+     */
+    void cacheResult(final Entry entry, final SearchResultCache.Key key, final List<DictEntry> result) {
+        resultCache.put(key, result, entry);
+    }
+
+    private synchronized void uncharge(final long heapBytes) {
+        heapUsage -= heapBytes;
+    }
+
+    /**
+     * Marks the entry as invalid. Must be invoked under the registry lock,
+     * before the results of the dictionary are removed from the cache.
+     *
+     * @param entry
+     *            the entry, already unregistered.
+     * @param unused
+     *            the entry is added to this list if it is not leased and has
+     *            to be closed by the caller.
+     */
+    private void invalidate(final Entry entry, final List<Entry> unused) {
+        entry.isInvalid = true;
+        if (entry.refCount == 0) {
+            unused.add(entry);
+        }
+    }
+
+    /**
+     * Returns the directory mode of given dictionary.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @return the mode of the opened index; otherwise the mode selected by
+     *         {@link #setDirectoryMode(Dictionary, DirectoryModeEnum)} or the
+     *         mode which would be chosen automatically now, from the
+     *         {@link DirectoryModeEnum#getIndexSize(File) index size} and the
+     *         part of the {@link #getMemoryBudget() memory budget} not used by
+     *         other indices. Never null.
+     */
+    public DirectoryModeEnum getDirectoryMode(final Dictionary dictionary) {
+        final File location;
+        synchronized (this) {
+            final Entry entry = entries.get(dictionary);
+            if (entry != null) {
+                return entry.mode;
+            }
+            final DirectoryModeEnum mode = modes.get(dictionary);
+            if (mode != null) {
+                return mode;
+            }
+            location = getIndexLocation(dictionary);
+        }
+        final long size = DirectoryModeEnum.getIndexSize(location);
+        synchronized (this) {
+            return DirectoryModeEnum.choose(size, memoryBudget - heapUsage);
+        }
+    }
+
+    /**
+     * Selects the directory mode for given dictionary. An already opened index
+     * is {@link #invalidate(Dictionary) invalidated} if the mode changes.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @param mode
+     *            the mode. If null then the mode is chosen automatically.
+     * @throws IOException
+     *             if the unused index fails to close.
+     */
+    public void setDirectoryMode(final Dictionary dictionary, final DirectoryModeEnum mode) throws IOException {
+        Check.checkNotNull("dictionary", dictionary);
+        final boolean changed;
+        synchronized (this) {
+            final DirectoryModeEnum old = mode == null ? modes.remove(dictionary) : modes.put(dictionary, mode);
+            changed = old != mode;
+        }
+        if (changed) {
+            invalidate(dictionary);
+        }
+    }
+
+    /**
+     * Returns the memory budget used to choose the directory mode
+     * automatically.
+     *
+     * @return the maximum amount of heap in bytes all indices copied to the
+     *         heap may occupy together.
+     */
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the memory budget used to choose the directory mode automatically.
+     * Already opened indices are not affected.
+     *
+     * @param memoryBudget
+     *            the maximum amount of heap in bytes all indices copied to the
+     *            heap may occupy together. Must not be negative.
+     */
+    public synchronized void setMemoryBudget(final long memoryBudget) {
+        Check.checkTrue("memoryBudget must not be negative", memoryBudget >= 0);
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the amount of heap occupied by the indices copied to the heap.
+     * Charged against the {@link #getMemoryBudget() memory budget}.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getHeapUsage() {
+        return heapUsage;
+    }
+
+    /**
+     * Returns the idle timeout.
+     *
+     * @return an index which is not used for this amount of milliseconds is
+     *         closed.
+     */
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the idle timeout.
+     *
+     * @param idleTimeout
+     *            an index which is not used for this amount of milliseconds is
+     *            closed. Must not be negative.
+     */
+    public synchronized void setIdleTimeout(final long idleTimeout) {
+        Check.checkTrue("idleTimeout must not be negative", idleTimeout >= 0);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the listener passed to the leased search objects.
+     *
+     * @return the listener, null if the searches are not measured.
+     */
+    public synchronized SearchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener which receives metrics of the searches performed by
+     * the search objects {@link #open(Dictionary, boolean) leased} from now
+     * on, see {@link LuceneSearch#setListener(SearchListener)}.
+     *
+     * @param listener
+     *            the listener, null to stop measuring.
+     */
+    public synchronized void setListener(final SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of indices opened by this registry so far.
+     *
+     * @return the index open count.
+     */
+    public synchronized int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Returns the number of leases which reused an already opened index.
+     *
+     * @return the hit count.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of leases which had to open the index.
+     *
+     * @return the miss count.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Checks if an index of given dictionary is currently opened.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @return true if the index is opened and registered, false otherwise.
+     */
+    public synchronized boolean isOpened(final Dictionary dictionary) {
+        return entries.containsKey(dictionary);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LuceneSearchRegistry{opened=" + entries.keySet() + ", opens=" + openCount + ", hits=" + hitCount + ", misses=" + missCount + ", modes=" + modes + ", memoryBudget=" + memoryBudget + ", heapUsage=" + heapUsage + ", " + resultCache + "}";
+    }
+
+    /**
+     * An opened index, shared by all leased {@link LuceneSearch} instances.
+     */
+    static final class Entry {
+
+        final LuceneSearchRegistry registry;
+        final Dictionary dictionary;
+        final Directory directory;
+        final IndexReader reader;
+        final IndexSearcher searcher;
+        final DirectoryModeEnum mode;
+        /**
+         * The heap charged against the memory budget, returned when the entry
+         * is closed.
+         */
+        final long heapBytes;
+        final Set<String> fields;
+        /**
+         * Number of {@link LuceneSearch} instances using this entry. Guarded
+         * by the registry.
+         */
+        int refCount = 0;
+        long lastReleased = 0;
+        /**
+         * If true then the entry is no longer registered and will be closed
+         * when the last lease is returned. Set under the registry lock, read
+         * by the {@link SearchResultCache} without it.
+         */
+        volatile boolean isInvalid = false;
+
+        Entry(final LuceneSearchRegistry registry, final Dictionary dictionary, final File location, final DirectoryModeEnum mode, final long heapBytes) throws IOException {
+            this.registry = registry;
+            this.dictionary = dictionary;
+            this.mode = mode;
+            this.heapBytes = heapBytes;
+            directory = mode.open(location);
+            try {
+                reader = IndexReader.open(directory, true);
+            } catch (IOException ex) {
+                directory.close();
+                throw ex;
+            }
+            searcher = new IndexSearcher(reader);
+            fields = LuceneSearch.getFieldNames(reader);
+        }
+
+        /**
+         * Closes the searcher, the reader and the directory. All three are
+         * closed even if some of them fail to close.
+         *
+         * @throws IOException
+         *             the first failure.
+         */
+        void close() throws IOException {
+            registry.uncharge(heapBytes);
+            IOException failure = null;
+            for (final Closeable c : new Closeable[]{searcher, reader, directory}) {
+                try {
+                    c.close();
+                } catch (IOException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
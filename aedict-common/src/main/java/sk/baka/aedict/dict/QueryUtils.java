@@ -0,0 +1,231 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Builds Lucene {@link Query} objects directly, without the need to produce
+ * and parse a query string. The queries are identical to those produced by the
+ * Lucene QueryParser with a {@link StandardAnalyzer}, but are created without
+ * the parsing overhead and without the need to escape special characters.
+ * Use {@link Query#toString()} to obtain the query string for debugging
+ * purposes.
+ *
+ * @author Martin Vysny
+ */
+public final class QueryUtils {
+
+    private QueryUtils() {
+        throw new AssertionError();
+    }
+    /**
+     * The analyzer used to index the analyzed fields. Thread-safe.
+     */
+    private static final Analyzer ANALYZER = new StandardAnalyzer(LuceneSearch.LUCENE_VERSION);
+
+    /**
+     * Creates a query which matches given text in an analyzed field. The text
+     * is tokenized by the {@link StandardAnalyzer}; a single token produces a
+     * {@link TermQuery}, multiple tokens produce a {@link PhraseQuery}.
+     *
+     * @param field
+     *            the field name, not null.
+     * @param text
+     *            the text to match, not null.
+     * @return the query, null if the analyzer produced no tokens (e.g. the
+     *         text contains stop words only).
+     */
+    public static Query analyzed(final String field, final String text) {
+        final List<String> terms = new ArrayList<String>();
+        final List<Integer> positions = new ArrayList<Integer>();
+        try {
+            final TokenStream ts = ANALYZER.reusableTokenStream(field, new StringReader(text));
+            final TermAttribute termAtt = ts.addAttribute(TermAttribute.class);
+            final PositionIncrementAttribute posAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            ts.reset();
+            int position = -1;
+            while (ts.incrementToken()) {
+                position += posAtt.getPositionIncrement();
+                terms.add(termAtt.term());
+                positions.add(position);
+            }
+            ts.end();
+            ts.close();
+        } catch (IOException ex) {
+            // not expected, we are reading from a String
+            throw new RuntimeException(ex);
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        if (terms.size() == 1) {
+            return new TermQuery(new Term(field, terms.get(0)));
+        }
+        final PhraseQuery result = new PhraseQuery();
+        for (int i = 0; i < terms.size(); i++) {
+            result.add(new Term(field, terms.get(i)), positions.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a query which matches given value of a non-analyzed field.
+     *
+     * @param field
+     *            the field name, not null.
+     * @param value
+     *            the exact value, not null.
+     * @return the term query, never null.
+     */
+    public static Query term(final String field, final String value) {
+        return new TermQuery(new Term(field, value));
+    }
+
+    /**
+     * Creates a query which matches values of a non-analyzed field starting
+     * with given prefix.
+     *
+     * @param field
+     *            the field name, not null.
+     * @param prefix
+     *            the prefix, not null.
+     * @return the prefix query, never null.
+     */
+    public static Query prefix(final String field, final String prefix) {
+        return new PrefixQuery(new Term(field, prefix));
+    }
+
+    /**
+     * Splits given text to overlapping pairs of characters, e.g. "abcd" is
+     * split to "ab", "bc", "cd". Used to index and search the bigram fields:
+     * a text contains a substring if and only if it contains all bigrams of
+     * the substring at consecutive positions.
+     *
+     * @param text
+     *            the text, not null.
+     * @return the bigrams, empty if the text is shorter than two characters.
+     */
+    public static List<String> bigrams(final String text) {
+        final List<String> result = new ArrayList<String>(Math.max(0, text.length() - 1));
+        for (int i = 0; i < text.length() - 1; i++) {
+            result.add(text.substring(i, i + 2));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a query which matches documents containing given substring in a
+     * bigram field, see {@link #bigrams(String)}.
+     *
+     * @param field
+     *            the bigram field name, not null.
+     * @param text
+     *            the substring, at least two characters long.
+     * @return a {@link TermQuery} for a two-character text, a
+     *         {@link PhraseQuery} of bigrams otherwise.
+     */
+    public static Query bigramPhrase(final String field, final String text) {
+        final List<String> bigrams = bigrams(text);
+        if (bigrams.isEmpty()) {
+            throw new IllegalArgumentException("Parameter text: invalid value " + text + ": must be at least two characters long");
+        }
+        if (bigrams.size() == 1) {
+            return new TermQuery(new Term(field, bigrams.get(0)));
+        }
+        final PhraseQuery result = new PhraseQuery();
+        for (int i = 0; i < bigrams.size(); i++) {
+            result.add(new Term(field, bigrams.get(i)), i);
+        }
+        return result;
+    }
+
+    /**
+     * Reverses given string. Used to index and search the reversed keyword
+     * fields: a suffix of a value becomes a prefix of the reversed value.
+     * Surrogate pairs are preserved.
+     *
+     * @param value
+     *            the string to reverse, not null.
+     * @return the reversed string.
+     */
+    public static String reverse(final String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    /**
+     * Creates a query which matches documents matching all given queries.
+     *
+     * @param queries
+     *            the queries. Null queries are ignored.
+     * @return the conjunction, the query itself if only a single non-null query
+     *         is given, null if there is no non-null query.
+     */
+    public static Query and(final Query... queries) {
+        return bool(BooleanClause.Occur.MUST, queries);
+    }
+
+    /**
+     * Creates a query which matches documents matching at least one of given
+     * queries.
+     *
+     * @param queries
+     *            the queries. Null queries are ignored.
+     * @return the disjunction, the query itself if only a single non-null query
+     *         is given, null if there is no non-null query.
+     */
+    public static Query or(final Query... queries) {
+        return bool(BooleanClause.Occur.SHOULD, queries);
+    }
+
+    private static Query bool(final BooleanClause.Occur occur, final Query... queries) {
+        final List<Query> nonNull = new ArrayList<Query>(queries.length);
+        for (final Query q : queries) {
+            if (q != null) {
+                nonNull.add(q);
+            }
+        }
+        if (nonNull.isEmpty()) {
+            return null;
+        }
+        if (nonNull.size() == 1) {
+            return nonNull.get(0);
+        }
+        final BooleanQuery result = new BooleanQuery();
+        for (final Query q : nonNull) {
+            result.add(q, occur);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.PriorityQueue;
+
+/**
+ * Orders {@link DictEntry entries} in the {@link DictEntry#compareTo(DictEntry)}
+ * order, without the cost of the comparator. The common flag, the length and
+ * the {@link DictEntry#getCommonality() commonality} of each entry are
+ * computed once and packed into a single <code>long</code> sort key; the
+ * japanese text is compared only when the keys are equal.
+ * <p/>
+ * The ordering is stable and is identical to the {@link DictEntry} ordering.
+ *
+ * @author Martin Vysny
+ */
+public final class Ranking {
+
+    private Ranking() {
+        throw new AssertionError();
+    }
+    private static final int LENGTH_BITS = 16;
+    private static final int COMMONALITY_BITS = 45;
+    private static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+    private static final long MAX_COMMONALITY = (1L << COMMONALITY_BITS) - 1;
+    /**
+     * The sort key of all invalid entries.
+     */
+    private static final long INVALID = Long.MAX_VALUE;
+
+    /**
+     * Computes a sort key of given entry. Entries with a lower key precede
+     * entries with a higher key; entries with the same key are ordered by
+     * their {@link DictEntry#getJapanese() japanese} text (or by the english
+     * text for invalid entries).
+     *
+     * @param entry
+     *            the entry, not null.
+     * @return the sort key.
+     */
+    public static long getSortKey(final DictEntry entry) {
+        if (!entry.isValid()) {
+            return INVALID;
+        }
+        // the highest bit is always zero, therefore valid entries precede the
+        // invalid ones
+        long key = Boolean.TRUE.equals(entry.isCommon) ? 0 : 1;
+        key = (key << LENGTH_BITS) | Math.min(entry.getJapanese().length(), MAX_LENGTH);
+        key = (key << COMMONALITY_BITS) | Math.min(entry.getCommonality(), MAX_COMMONALITY);
+        return key;
+    }
+
+    /**
+     * Sorts given list in place.
+     *
+     * @param <T>
+     *            the entry type
+     * @param entries
+     *            the entries to sort, not null.
+     * @return the entries list.
+     */
+    public static <T extends DictEntry> List<T> sort(final List<T> entries) {
+        if (entries.size() < 2) {
+            return entries;
+        }
+        final List<Ranked<T>> ranked = rank(entries);
+        Collections.sort(ranked);
+        final ListIterator<T> i = entries.listIterator();
+        for (final Ranked<T> r : ranked) {
+            i.next();
+            i.set(r.entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Computes the order of given entries, without modifying the list.
+     *
+     * @param entries
+     *            the entries, not null.
+     * @return an array of indices to the entries list: the first item is the
+     *         index of the best entry, etc.
+     */
+    public static <T extends DictEntry> int[] order(final List<T> entries) {
+        final List<Ranked<T>> ranked = rank(entries);
+        Collections.sort(ranked);
+        final int[] result = new int[ranked.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ranked.get(i).index;
+        }
+        return result;
+    }
+
+    /**
+     * Selects the best entries. Only the selected entries are sorted; the
+     * rest of the entries is kept in a bounded heap and is not ordered at
+     * all.
+     *
+     * @param <T>
+     *            the entry type
+     * @param entries
+     *            the entries, not null. Not modified.
+     * @param count
+     *            the maximum number of entries to return.
+     * @return a new list containing at most count best entries, sorted.
+     */
+    public static <T extends DictEntry> List<T> top(final Collection<T> entries, final int count) {
+        if (count <= 0) {
+            return new ArrayList<T>();
+        }
+        if (count >= entries.size()) {
+            return sort(new ArrayList<T>(entries));
+        }
+        // a max-heap of the best entries found so far: the worst of them is
+        // on top, to be replaced by a better entry
+        final PriorityQueue<Ranked<T>> heap = new PriorityQueue<Ranked<T>>(count, Collections.reverseOrder());
+        int index = 0;
+        for (final T entry : entries) {
+            final Ranked<T> r = new Ranked<T>(entry, index++);
+            if (heap.size() < count) {
+                heap.add(r);
+            } else if (r.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(r);
+            }
+        }
+        final List<T> result = new ArrayList<T>(heap.size());
+        for (int i = 0; i < count; i++) {
+            result.add(null);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            result.set(i, heap.poll().entry);
+        }
+        return result;
+    }
+
+    private static <T extends DictEntry> List<Ranked<T>> rank(final List<T> entries) {
+        final List<Ranked<T>> result = new ArrayList<Ranked<T>>(entries.size());
+        int index = 0;
+        for (final T entry : entries) {
+            result.add(new Ranked<T>(entry, index++));
+        }
+        return result;
+    }
+
+    /**
+     * An entry with its precomputed sort key.
+     */
+    private static final class Ranked<T extends DictEntry> implements Comparable<Ranked<T>> {
+
+        final T entry;
+        final long key;
+        /**
+         * The original position of the entry, makes the ordering stable.
+         */
+        final int index;
+
+        Ranked(final T entry, final int index) {
+            this.entry = entry;
+            this.index = index;
+            key = getSortKey(entry);
+        }
+
+        public int compareTo(Ranked<T> o) {
+            if (key != o.key) {
+                return key < o.key ? -1 : 1;
+            }
+            final int result = key == INVALID ? entry.english.compareTo(o.entry.english) : entry.getJapanese().compareTo(o.entry.getJapanese());
+            if (result != 0) {
+                return result;
+            }
+            return index - o.index;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+/**
+ * Enumerates the structures a {@link SearchEngine} may answer a query from,
+ * ordered from the cheapest one.
+ *
+ * @author Martin Vysny
+ */
+public enum SearchBackendEnum {
+
+    /**
+     * The in-memory {@link KanjidicLookup} of the KANJIDIC entries by the
+     * kanji character.
+     */
+    Kanjidic,
+    /**
+     * The memory-mapped {@link HeadwordIndex}, answers the exact and the
+     * prefix Japanese EDICT lookups.
+     */
+    Headwords,
+    /**
+     * The Lucene index, answers all queries.
+     */
+    Lucene;
+}
@@ -0,0 +1,250 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ReaderUtil;
+
+/**
+ * A lazy cursor over search results, obtained by
+ * {@link LuceneSearch#searchCursor(SearchQuery)}. A document is loaded and
+ * parsed only when the caller asks for the next entry, therefore the cursor
+ * is able to stream arbitrary number of results in a constant memory.
+ * <p/>
+ * The Lucene queries are walked in the order given by
+ * {@link DictTypeEnum#getLuceneQuery(SearchQuery, java.util.Set)} (i.e. the
+ * common EDICT entries are returned first); the documents matched by a single
+ * query are returned in the index order. The results are not sorted.
+ * <p/>
+ * Not thread-safe. The cursor must be closed.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchCursor implements Closeable {
+
+    private final DictTypeEnum dictType;
+    private final SearchQuery query;
+    private final Searcher searcher;
+    private final Query[] queries;
+    private final FieldSelector fieldSelector;
+    /**
+     * If true then the Lucene queries are exact and the results are not
+     * filtered.
+     */
+    private final boolean isExact;
+    /**
+     * All segments of the index.
+     */
+    private final List<IndexReader> segments = new ArrayList<IndexReader>();
+    /**
+     * If non-null then this cursor holds a lease of this registry entry.
+     */
+    private LuceneSearchRegistry.Entry lease;
+    /**
+     * Receives the {@link #metrics} when the cursor is closed, null if the
+     * cursor is not measured.
+     */
+    private final SearchListener listener;
+    private final SearchMetrics metrics;
+    private int currentQuery = -1;
+    private Weight weight = null;
+    private int currentSegment = -1;
+    private Scorer scorer = null;
+    private boolean closed = false;
+
+    SearchCursor(final DictTypeEnum dictType, final SearchQuery query, final Searcher searcher, final IndexReader reader, final Query[] queries, final boolean isExact, final LuceneSearchRegistry.Entry lease, final SearchListener listener, final SearchMetrics metrics) {
+        this.dictType = dictType;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.query = query;
+        this.searcher = searcher;
+        this.queries = queries;
+        this.isExact = isExact;
+        fieldSelector = dictType.getFieldSelector(query.langCode);
+        ReaderUtil.gatherSubReaders(segments, reader);
+        this.lease = lease;
+        if (lease != null) {
+            lease.registry.retain(lease);
+        }
+    }
+
+    /**
+     * Returns the next matching entry.
+     *
+     * @return the entry, may be an {@link DictEntry#isValid() error entry}
+     *         if the document failed to parse. Returns null if there are no
+     *         more results.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public DictEntry next() throws IOException {
+        if (closed) {
+            return null;
+        }
+        final long start = metrics == null ? 0 : System.nanoTime();
+        final DictEntry entry = metrics == null ? nextEntry() : nextEntryMeasured();
+        if (metrics != null) {
+            metrics.add(SearchPhaseEnum.Total, System.nanoTime() - start);
+            if (entry != null) {
+                metrics.hitsKept++;
+            }
+        }
+        if (entry == null) {
+            close();
+        }
+        return entry;
+    }
+
+    private DictEntry nextEntry() throws IOException {
+        while (true) {
+            final int doc = nextDoc();
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                return null;
+            }
+            final Document document = segments.get(currentSegment).document(doc, fieldSelector);
+            final DictEntry entry = isExact ? dictType.tryGetEntry(document, query.langCode) : dictType.tryGetEntry(document, query);
+            if (entry != null) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #nextEntry()}, but measures the phases separately. The
+     * {@link SearchPhaseEnum#Search} phase is computed when the cursor is
+     * closed.
+     */
+    private DictEntry nextEntryMeasured() throws IOException {
+        while (true) {
+            final int doc = nextDoc();
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                return null;
+            }
+            final long start = System.nanoTime();
+            final Document document = segments.get(currentSegment).document(doc, fieldSelector);
+            final long loaded = System.nanoTime();
+            final DictEntry entry = dictType.tryGetEntry(document, query.langCode);
+            final long decoded = System.nanoTime();
+            final boolean matches = isExact || dictType.matches(entry, query);
+            metrics.add(SearchPhaseEnum.Load, loaded - start);
+            metrics.add(SearchPhaseEnum.Decode, decoded - loaded);
+            metrics.add(SearchPhaseEnum.Filter, System.nanoTime() - decoded);
+            metrics.hitsFetched++;
+            metrics.addStoredBytes(document);
+            if (matches) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns at most given number of next matching entries.
+     *
+     * @param maxResults
+     *            the maximum number of entries to return.
+     * @return the entries, never null. If the list contains less than
+     *         maxResults entries then there are no more results.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public List<DictEntry> next(final int maxResults) throws IOException {
+        final List<DictEntry> result = new ArrayList<DictEntry>();
+        while (result.size() < maxResults) {
+            final DictEntry entry = next();
+            if (entry == null) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Advances to the next matching document.
+     *
+     * @return the document number, relative to the current segment, or
+     *         {@link DocIdSetIterator#NO_MORE_DOCS}.
+     */
+    private int nextDoc() throws IOException {
+        while (true) {
+            if (scorer != null) {
+                final int doc = scorer.nextDoc();
+                if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+                    return doc;
+                }
+                scorer = null;
+            }
+            // advance to the next segment
+            if (weight != null && currentSegment < segments.size() - 1) {
+                currentSegment++;
+                scorer = weight.scorer(segments.get(currentSegment), true, false);
+                continue;
+            }
+            // advance to the next query
+            weight = null;
+            while (weight == null && currentQuery < queries.length - 1) {
+                currentQuery++;
+                if (queries[currentQuery] != null) {
+                    weight = queries[currentQuery].weight(searcher);
+                }
+            }
+            if (weight == null) {
+                return DocIdSetIterator.NO_MORE_DOCS;
+            }
+            currentSegment = -1;
+        }
+    }
+
+    /**
+     * Closes the cursor and reports the metrics to the listener, if any. Does
+     * nothing if the cursor is already closed.
+     *
+     * @throws IOException
+     *             if the cursor was the last user of an invalidated index and
+     *             the index fails to close.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scorer = null;
+        weight = null;
+        if (metrics != null) {
+            metrics.add(SearchPhaseEnum.Search, metrics.getNanos(SearchPhaseEnum.Total) - metrics.getNanos(SearchPhaseEnum.Parse) - metrics.getNanos(SearchPhaseEnum.Load) - metrics.getNanos(SearchPhaseEnum.Decode) - metrics.getNanos(SearchPhaseEnum.Filter));
+            listener.searchPerformed(metrics);
+        }
+        if (lease != null) {
+            final LuceneSearchRegistry.Entry l = lease;
+            lease = null;
+            l.registry.release(l);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * Routes each query to the cheapest structure able to answer it, see
+ * {@link SearchBackendEnum}. The auxiliary structures (the
+ * {@link KanjidicLookup} and the {@link HeadwordIndex}) are used only when
+ * {@link #install(Dictionary) installed}; all other queries are searched in
+ * the Lucene index leased from the {@link LuceneSearchRegistry}. The result is
+ * the same regardless of the structure used; this may be verified by the
+ * {@link #setCrossCheck(boolean) cross-check} mode.
+ * <p/>
+ * The structures of a dictionary are dropped as soon as the registry
+ * {@link LuceneSearchRegistry#invalidate(Dictionary) invalidates} the
+ * dictionary, either directly or because of a
+ * {@link LuceneSearchRegistry#updateVersions(DictionaryVersions) version
+ * change}; they have to be installed again afterwards.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchEngine {
+
+    /**
+     * A search result, tagged with the structure which produced it.
+     */
+    public static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * The entries found, never null. Sorted in the same way as the
+         * result of {@link LuceneSearch#search(SearchQuery, int)}.
+         */
+        public final List<DictEntry> entries;
+        /**
+         * The structure which served the query, not null.
+         */
+        public final SearchBackendEnum backend;
+
+        public Result(final List<DictEntry> entries, final SearchBackendEnum backend) {
+            Check.checkNotNull("entries", entries);
+            Check.checkNotNull("backend", backend);
+            this.entries = entries;
+            this.backend = backend;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + entries.size() + " entries from " + backend + "}";
+        }
+    }
+    private final LuceneSearchRegistry registry;
+    /**
+     * if true then the result list is always sorted.
+     */
+    private final boolean sort;
+    private final Map<Dictionary, KanjidicLookup> kanjidic = new HashMap<Dictionary, KanjidicLookup>();
+    private final Map<Dictionary, HeadwordIndex> headwords = new HashMap<Dictionary, HeadwordIndex>();
+    /**
+     * The {@link LuceneSearchRegistry#getGeneration(Dictionary) generation}
+     * of the dictionary files the installed structures were loaded from.
+     */
+    private final Map<Dictionary, Long> generations = new HashMap<Dictionary, Long>();
+    private volatile boolean crossCheck = false;
+
+    /**
+     * Creates the search engine.
+     *
+     * @param registry
+     *            the Lucene indices are opened using this registry, not null.
+     * @param sort
+     *            if true then the result list is always sorted.
+     */
+    public SearchEngine(final LuceneSearchRegistry registry, final boolean sort) {
+        Check.checkNotNull("registry", registry);
+        this.registry = registry;
+        this.sort = sort;
+    }
+
+    /**
+     * Installs the auxiliary structures available for given dictionary: loads
+     * the KANJIDIC to the memory, or maps the headword index of an EDICT
+     * dictionary if the index directory contains one. Intended to be called
+     * in a background thread, e.g. after a dictionary has been downloaded.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     * @return the structure installed, {@link SearchBackendEnum#Lucene} if
+     *         no auxiliary structure is available.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public SearchBackendEnum install(final Dictionary dictionary) throws IOException {
+        Check.checkNotNull("dictionary", dictionary);
+        final File location = registry.getIndexLocation(dictionary);
+        // the files may be replaced while being loaded
+        final long generation = registry.getGeneration(dictionary);
+        if (dictionary.dte == DictTypeEnum.Kanjidic) {
+            install(dictionary, KanjidicLookup.load(location), generation);
+            return SearchBackendEnum.Kanjidic;
+        }
+        if (dictionary.dte == DictTypeEnum.Edict) {
+            final HeadwordIndex index = HeadwordIndex.open(location);
+            if (index != null) {
+                install(dictionary, index, generation);
+                return SearchBackendEnum.Headwords;
+            }
+        }
+        return SearchBackendEnum.Lucene;
+    }
+
+    /**
+     * Installs the in-memory KANJIDIC lookup.
+     *
+     * @param dictionary
+     *            the KANJIDIC dictionary, not null.
+     * @param lookup
+     *            the lookup, not null.
+     */
+    public void install(final Dictionary dictionary, final KanjidicLookup lookup) {
+        install(dictionary, lookup, registry.getGeneration(dictionary));
+    }
+
+    private synchronized void install(final Dictionary dictionary, final KanjidicLookup lookup, final long generation) {
+        Check.checkNotNull("lookup", lookup);
+        if (dictionary.dte != DictTypeEnum.Kanjidic) {
+            throw new IllegalArgumentException("Parameter dictionary: invalid value " + dictionary + ": must be a KANJIDIC");
+        }
+        kanjidic.put(dictionary, lookup);
+        generations.put(dictionary, generation);
+    }
+
+    /**
+     * Installs the headword index.
+     *
+     * @param dictionary
+     *            the EDICT dictionary, not null.
+     * @param index
+     *            the headword index of the dictionary, not null.
+     */
+    public void install(final Dictionary dictionary, final HeadwordIndex index) {
+        install(dictionary, index, registry.getGeneration(dictionary));
+    }
+
+    private synchronized void install(final Dictionary dictionary, final HeadwordIndex index, final long generation) {
+        Check.checkNotNull("index", index);
+        if (dictionary.dte != DictTypeEnum.Edict) {
+            throw new IllegalArgumentException("Parameter dictionary: invalid value " + dictionary + ": must be an EDICT");
+        }
+        headwords.put(dictionary, index);
+        generations.put(dictionary, generation);
+    }
+
+    /**
+     * Removes the auxiliary structures of given dictionary, e.g. before the
+     * dictionary is deleted or updated. The dictionary is then searched in
+     * the Lucene index only.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     */
+    public synchronized void uninstall(final Dictionary dictionary) {
+        kanjidic.remove(dictionary);
+        headwords.remove(dictionary);
+        generations.remove(dictionary);
+    }
+
+    /**
+     * Drops the structures of given dictionary if the dictionary has been
+     * invalidated since they were installed.
+     */
+    private synchronized void uninstallStale(final Dictionary dictionary) {
+        final Long generation = generations.get(dictionary);
+        if (generation != null && generation != registry.getGeneration(dictionary)) {
+            uninstall(dictionary);
+        }
+    }
+
+    /**
+     * Returns the structure given query will be routed to. The query may
+     * still be answered by the Lucene index if the structure rejects it.
+     *
+     * @param dictionary
+     *            the dictionary to search in, not null.
+     * @param query
+     *            the query, not null.
+     * @return the structure, never null.
+     */
+    public synchronized SearchBackendEnum route(final Dictionary dictionary, final SearchQuery query) {
+        uninstallStale(dictionary);
+        final KanjidicLookup k = kanjidic.get(dictionary);
+        if (k != null && k.isSupported(query)) {
+            return SearchBackendEnum.Kanjidic;
+        }
+        final HeadwordIndex h = headwords.get(dictionary);
+        if (h != null && h.isSupported(query)) {
+            return SearchBackendEnum.Headwords;
+        }
+        return SearchBackendEnum.Lucene;
+    }
+
+    /**
+     * Enables or disables the cross-check mode: each query answered by an
+     * auxiliary structure is searched in the Lucene index as well, and an
+     * {@link IllegalStateException} is thrown if the results differ. Intended
+     * for the differential testing only, as it makes the searches slower.
+     *
+     * @param crossCheck
+     *            true to enable the cross-check mode.
+     */
+    public void setCrossCheck(final boolean crossCheck) {
+        this.crossCheck = crossCheck;
+    }
+
+    /**
+     * Checks if the cross-check mode is enabled.
+     *
+     * @return true if the results are verified against the Lucene index.
+     */
+    public boolean isCrossCheck() {
+        return crossCheck;
+    }
+
+    /**
+     * Searches the default dictionary of the query type.
+     *
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @return the result, never null.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public Result search(final SearchQuery query, final int maxResults) throws IOException {
+        return search(new Dictionary(query.dictType, null), query, maxResults);
+    }
+
+    /**
+     * Performs a search.
+     *
+     * @param dictionary
+     *            the dictionary to search in, not null.
+     * @param query
+     *            the query to search for.
+     * @param maxResults
+     *            the maximum number of results to list
+     * @return the result, never null.
+     * @throws IOException
+     *             on I/O error.
+     */
+    public Result search(final Dictionary dictionary, final SearchQuery query, final int maxResults) throws IOException {
+        Check.checkNotNull("dictionary", dictionary);
+        Check.checkNotNull("query", query);
+        if (dictionary.dte != query.dictType) {
+            throw new IllegalArgumentException("Cannot search " + dictionary + " with a " + query.dictType + " query");
+        }
+        final SearchBackendEnum backend;
+        final KanjidicLookup k;
+        final HeadwordIndex h;
+        synchronized (this) {
+            backend = route(dictionary, query);
+            k = kanjidic.get(dictionary);
+            h = headwords.get(dictionary);
+        }
+        List<DictEntry> result = null;
+        switch (backend) {
+            case Kanjidic:
+                result = k.search(query, maxResults);
+                break;
+            case Headwords:
+                result = h.search(query, maxResults);
+                break;
+            default:
+                // searched in the Lucene index below
+                break;
+        }
+        if (result == null) {
+            return new Result(searchLucene(dictionary, query, maxResults), SearchBackendEnum.Lucene);
+        }
+        if (crossCheck) {
+            final List<DictEntry> expected = searchLucene(dictionary, query, maxResults);
+            if (!toExternal(expected).equals(toExternal(result))) {
+                throw new IllegalStateException(backend + " returned " + result + " instead of " + expected + " for " + query);
+            }
+        }
+        return new Result(result, backend);
+    }
+
+    private List<DictEntry> searchLucene(final Dictionary dictionary, final SearchQuery query, final int maxResults) throws IOException {
+        final LuceneSearch search = registry.open(dictionary, sort);
+        try {
+            return search.search(query, maxResults);
+        } finally {
+            search.close();
+        }
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>(entries.size());
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+/**
+ * Receives the {@link SearchMetrics metrics} of every search performed by
+ * {@link LuceneSearch}, see {@link LuceneSearch#setListener(SearchListener)}
+ * and {@link LuceneSearchRegistry#setListener(SearchListener)}.
+ *
+ * @author Martin Vysny
+ */
+public interface SearchListener {
+
+    /**
+     * Invoked when a search finishes. Invoked from the searching thread,
+     * possibly from multiple threads concurrently; the implementation should
+     * be fast and must not throw an exception.
+     *
+     * @param metrics
+     *            the search metrics, not null.
+     */
+    void searchPerformed(SearchMetrics metrics);
+}
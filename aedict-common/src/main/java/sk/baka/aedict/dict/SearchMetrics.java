@@ -0,0 +1,127 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+
+/**
+ * Measures a single search. Collected only when a {@link SearchListener} is
+ * {@link LuceneSearch#setListener(SearchListener) registered}. The
+ * {@link #source} tells how the search was served; the phases which do not
+ * apply to it are zero.
+ * <p/>
+ * Not thread-safe: filled by the searching thread, then passed to the
+ * listener.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchMetrics {
+
+    /**
+     * The dictionary type, not null.
+     */
+    public final DictTypeEnum dictType;
+    /**
+     * The matcher of the query, not null. A {@link SearchSourceEnum#Batch}
+     * of queries with different matchers reports null.
+     */
+    public final MatcherEnum matcher;
+    /**
+     * How the search was served, not null.
+     */
+    public final SearchSourceEnum source;
+    /**
+     * Duration of each phase in nanoseconds, indexed by
+     * {@link SearchPhaseEnum#ordinal()}.
+     */
+    public final long[] nanos = new long[SearchPhaseEnum.values().length];
+    /**
+     * The number of documents matched by Lucene and loaded.
+     */
+    public int hitsFetched = 0;
+    /**
+     * The number of entries returned.
+     */
+    public int hitsKept = 0;
+    /**
+     * Approximate size of the stored fields loaded, in bytes (the UTF-8 size
+     * of string fields).
+     */
+    public long storedBytes = 0;
+
+    SearchMetrics(final DictTypeEnum dictType, final MatcherEnum matcher, final SearchSourceEnum source) {
+        this.dictType = dictType;
+        this.matcher = matcher;
+        this.source = source;
+    }
+
+    /**
+     * Returns the duration of given phase.
+     *
+     * @param phase
+     *            the phase, not null.
+     * @return the duration in nanoseconds.
+     */
+    public long getNanos(final SearchPhaseEnum phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    void add(final SearchPhaseEnum phase, final long nanos) {
+        this.nanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Adds the size of the stored fields of given document to
+     * {@link #storedBytes}.
+     *
+     * @param doc
+     *            the loaded document.
+     */
+    void addStoredBytes(final Document doc) {
+        for (final Object o : doc.getFields()) {
+            final Fieldable field = (Fieldable) o;
+            if (field.isBinary()) {
+                storedBytes += field.getBinaryLength();
+            } else if (field.stringValue() != null) {
+                storedBytes += utf8Length(field.stringValue());
+            }
+        }
+    }
+
+    private static int utf8Length(final String s) {
+        int result = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            result += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SearchMetrics{");
+        sb.append(dictType).append('/').append(matcher).append('/').append(source);
+        for (final SearchPhaseEnum phase : SearchPhaseEnum.values()) {
+            sb.append(", ").append(phase).append('=').append(getNanos(phase)).append("ns");
+        }
+        sb.append(", hits=").append(hitsKept).append('/').append(hitsFetched);
+        sb.append(", storedBytes=").append(storedBytes).append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import sk.baka.aedict.util.Histogram;
+
+/**
+ * Aggregates the {@link SearchMetrics} of all searches: keeps a
+ * {@link Histogram} of the duration of every {@link SearchPhaseEnum phase} and
+ * the totals of hits and loaded bytes. The index searches are aggregated per
+ * {@link DictTypeEnum dictionary type} and {@link MatcherEnum matcher}, all
+ * searches are aggregated per {@link SearchSourceEnum source}. Register it
+ * using {@link LuceneSearch#setListener(SearchListener)} or
+ * {@link LuceneSearchRegistry#setListener(SearchListener)}.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchMetricsRecorder implements SearchListener {
+
+    /**
+     * Metrics of a single dictionary type and matcher, or of a single source.
+     */
+    public static final class Stats {
+
+        private final Map<SearchPhaseEnum, Histogram> phases = new EnumMap<SearchPhaseEnum, Histogram>(SearchPhaseEnum.class);
+        private long searches = 0;
+        private long hitsFetched = 0;
+        private long hitsKept = 0;
+        private long storedBytes = 0;
+
+        private Stats() {
+            for (final SearchPhaseEnum phase : SearchPhaseEnum.values()) {
+                phases.put(phase, new Histogram());
+            }
+        }
+
+        private void add(final SearchMetrics metrics) {
+            for (final SearchPhaseEnum phase : SearchPhaseEnum.values()) {
+                phases.get(phase).record(metrics.getNanos(phase));
+            }
+            synchronized (this) {
+                searches++;
+                hitsFetched += metrics.hitsFetched;
+                hitsKept += metrics.hitsKept;
+                storedBytes += metrics.storedBytes;
+            }
+        }
+
+        /**
+         * Returns the durations of given phase.
+         *
+         * @param phase
+         *            the phase, not null.
+         * @return the histogram of durations in nanoseconds, never null.
+         */
+        public Histogram getHistogram(final SearchPhaseEnum phase) {
+            return phases.get(phase);
+        }
+
+        public synchronized long getSearches() {
+            return searches;
+        }
+
+        public synchronized long getHitsFetched() {
+            return hitsFetched;
+        }
+
+        public synchronized long getHitsKept() {
+            return hitsKept;
+        }
+
+        public synchronized long getStoredBytes() {
+            return storedBytes;
+        }
+
+        @Override
+        public synchronized String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("searches=").append(searches).append(", hits kept/fetched=").append(hitsKept).append('/').append(hitsFetched).append(", storedBytes=").append(storedBytes);
+            for (final SearchPhaseEnum phase : SearchPhaseEnum.values()) {
+                sb.append("\n  ").append(phase).append(" [ns]: ").append(phases.get(phase));
+            }
+            return sb.toString();
+        }
+    }
+    private final Map<DictTypeEnum, Map<MatcherEnum, Stats>> stats = new EnumMap<DictTypeEnum, Map<MatcherEnum, Stats>>(DictTypeEnum.class);
+    private final Map<SearchSourceEnum, Stats> sources = new EnumMap<SearchSourceEnum, Stats>(SearchSourceEnum.class);
+
+    public void searchPerformed(SearchMetrics metrics) {
+        if (metrics.source == SearchSourceEnum.Index) {
+            getOrCreate(metrics.dictType, metrics.matcher).add(metrics);
+        }
+        getOrCreate(metrics.source).add(metrics);
+    }
+
+    private synchronized Stats getOrCreate(final SearchSourceEnum source) {
+        Stats s = sources.get(source);
+        if (s == null) {
+            s = new Stats();
+            sources.put(source, s);
+        }
+        return s;
+    }
+
+    private synchronized Stats getOrCreate(final DictTypeEnum dictType, final MatcherEnum matcher) {
+        Map<MatcherEnum, Stats> m = stats.get(dictType);
+        if (m == null) {
+            m = new EnumMap<MatcherEnum, Stats>(MatcherEnum.class);
+            stats.put(dictType, m);
+        }
+        Stats s = m.get(matcher);
+        if (s == null) {
+            s = new Stats();
+            m.put(matcher, s);
+        }
+        return s;
+    }
+
+    /**
+     * Returns metrics of the {@link SearchSourceEnum#Index index searches} of
+     * given dictionary type and matcher.
+     *
+     * @param dictType
+     *            the dictionary type, not null.
+     * @param matcher
+     *            the matcher, not null.
+     * @return the metrics, or null if no such search has been performed.
+     */
+    public synchronized Stats getStats(final DictTypeEnum dictType, final MatcherEnum matcher) {
+        final Map<MatcherEnum, Stats> m = stats.get(dictType);
+        return m == null ? null : m.get(matcher);
+    }
+
+    /**
+     * Returns metrics of all searches served by given source.
+     *
+     * @param source
+     *            the source, not null.
+     * @return the metrics, or null if no such search has been performed.
+     */
+    public synchronized Stats getStats(final SearchSourceEnum source) {
+        return sources.get(source);
+    }
+
+    /**
+     * Forgets all metrics.
+     */
+    public synchronized void clear() {
+        stats.clear();
+        sources.clear();
+    }
+
+    /**
+     * Reports all metrics, including the p50/p95/p99 of every phase.
+     *
+     * @return a human-readable report, never null.
+     */
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<DictTypeEnum, Map<MatcherEnum, Stats>> e : stats.entrySet()) {
+            for (final Map.Entry<MatcherEnum, Stats> s : e.getValue().entrySet()) {
+                sb.append(e.getKey()).append('/').append(s.getKey()).append(": ").append(s.getValue()).append('\n');
+            }
+        }
+        for (final Map.Entry<SearchSourceEnum, Stats> e : sources.entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
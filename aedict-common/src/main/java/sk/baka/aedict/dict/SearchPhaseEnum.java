@@ -0,0 +1,56 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+/**
+ * Enumerates the phases of a search, measured by {@link SearchMetrics}.
+ *
+ * @author Martin Vysny
+ */
+public enum SearchPhaseEnum {
+
+    /**
+     * Builds the Lucene queries from the {@link SearchQuery}.
+     */
+    Parse,
+    /**
+     * Lucene matches the documents. Does not include the time spent in the
+     * other phases while the documents are collected.
+     */
+    Search,
+    /**
+     * Loads the stored fields of the matched documents.
+     */
+    Load,
+    /**
+     * Parses the {@link DictEntry entries} from the loaded documents.
+     */
+    Decode,
+    /**
+     * Filters out the entries which do not match the query.
+     */
+    Filter,
+    /**
+     * Sorts the result list.
+     */
+    Sort,
+    /**
+     * The whole search, including all of the phases above.
+     */
+    Total
+}
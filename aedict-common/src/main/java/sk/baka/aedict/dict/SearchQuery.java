@@ -18,6 +18,7 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 package sk.baka.aedict.dict;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import sk.baka.aedict.kanji.KanjiUtils;
 import sk.baka.aedict.kanji.RomanizationEnum;
@@ -67,6 +68,13 @@ public final class SearchQuery implements Serializable {
      * count.
      */
     public Integer strokesPlusMinus;
+    /**
+     * Optional: the romaji text as entered by the user, before the conversion
+     * to {@link #query kana}. Allows for a direct lookup in the romaji key
+     * field of the EDICT index, see
+     * {@link sk.baka.aedict.kanji.RomanizationEnum#toRomajiKey(String)}.
+     */
+    public String romaji;
     /**
      * The dictionary to use for the search.
      */
@@ -91,12 +99,55 @@ public final class SearchQuery implements Serializable {
      */
     public SearchQuery(SearchQuery other) {
         this(other.dictType);
-        query = other.query.clone();
+        query = other.query == null ? null : other.query.clone();
         isJapanese = other.isJapanese;
+        langCode = other.langCode;
         matcher = other.matcher;
         strokeCount = other.strokeCount;
         skip = other.skip;
         radical = other.radical;
+        strokesPlusMinus = other.strokesPlusMinus;
+        romaji = other.romaji;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final SearchQuery other = (SearchQuery) obj;
+        return dictType == other.dictType && isJapanese == other.isJapanese && matcher == other.matcher && Arrays.equals(query, other.query) && eq(langCode, other.langCode)
+                && eq(strokeCount, other.strokeCount) && eq(skip, other.skip) && eq(radical, other.radical) && eq(strokesPlusMinus, other.strokesPlusMinus) && eq(romaji, other.romaji);
+    }
+
+    private static boolean eq(final Object o1, final Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 37 * hash + Arrays.hashCode(query);
+        hash = 37 * hash + (isJapanese ? 1 : 0);
+        hash = 37 * hash + (langCode != null ? langCode.hashCode() : 0);
+        hash = 37 * hash + (matcher != null ? matcher.hashCode() : 0);
+        hash = 37 * hash + (strokeCount != null ? strokeCount.hashCode() : 0);
+        hash = 37 * hash + (skip != null ? skip.hashCode() : 0);
+        hash = 37 * hash + (radical != null ? radical.hashCode() : 0);
+        hash = 37 * hash + (strokesPlusMinus != null ? strokesPlusMinus.hashCode() : 0);
+        hash = 37 * hash + (romaji != null ? romaji.hashCode() : 0);
+        hash = 37 * hash + (dictType != null ? dictType.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery{" + dictType + ": " + prettyPrintQuery() + ", " + matcher + (isJapanese ? ", japanese" : "") + (langCode != null ? ", lang=" + langCode : "")
+                + (strokeCount != null ? ", strokes=" + strokeCount : "") + (strokesPlusMinus != null ? "+-" + strokesPlusMinus : "") + (skip != null ? ", skip=" + skip : "")
+                + (radical != null ? ", radical=" + radical : "") + (romaji != null ? ", romaji=" + romaji : "") + "}";
     }
 
     /**
@@ -194,6 +245,10 @@ public final class SearchQuery implements Serializable {
 		k.add(r.toKatakana(token));
 		h.add(r.toHiragana(token));
 	    }
+	    if (k.toString().equals(h.toString())) {
+		// nothing to convert, e.g. a kanji or a kana query
+		return new String[]{k.toString()};
+	    }
 	    return new String[]{k.toString(), h.toString()};
 	} else {
 	    return new String[]{query};
@@ -260,6 +315,7 @@ public final class SearchQuery implements Serializable {
     public static SearchQuery searchJpRomaji(final String word, final RomanizationEnum romanization, final MatcherEnum matcher) {
         final SearchQuery result = new SearchQuery(DictTypeEnum.Edict);
         result.query = parseQuery(word, true, romanization);
+        result.romaji = word.trim();
         result.isJapanese = true;
         result.matcher = matcher;
         return result;
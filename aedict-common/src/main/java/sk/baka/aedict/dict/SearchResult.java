@@ -0,0 +1,56 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.io.Serializable;
+import java.util.List;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * A result of a search which may have been terminated prematurely, either by
+ * a {@link CancelToken} or because it ran out of its time budget.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * The entries found, never null. Sorted in the same way as the result of
+     * {@link LuceneSearch#search(SearchQuery, int)}.
+     */
+    public final List<DictEntry> entries;
+    /**
+     * If true then the search was cancelled or its deadline expired before
+     * it completed: {@link #entries} contains only a part of the matching
+     * entries.
+     */
+    public final boolean truncated;
+
+    public SearchResult(final List<DictEntry> entries, final boolean truncated) {
+        Check.checkNotNull("entries", entries);
+        this.entries = entries;
+        this.truncated = truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" + entries.size() + " entries" + (truncated ? ", truncated" : "") + "}";
+    }
+}
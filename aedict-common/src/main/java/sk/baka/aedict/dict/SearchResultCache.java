@@ -0,0 +1,362 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sk.baka.aedict.util.Check;
+
+/**
+ * A LRU cache of search results, owned by the {@link LuceneSearchRegistry}.
+ * The cache is consulted by {@link LuceneSearch} instances leased from the
+ * registry; it is bounded both by the number of cached results and by their
+ * approximate size in bytes. Empty results are cached as well, so that
+ * repeated lookups of a word which is not in the dictionary are cheap.
+ * Results containing an {@link DictEntry#isValid() error entry} are never
+ * cached.
+ * <p/>
+ * The cached results of a dictionary are discarded when the dictionary is
+ * {@link LuceneSearchRegistry#invalidate(Dictionary) invalidated} (e.g.
+ * re-downloaded) or when its
+ * {@link LuceneSearchRegistry#updateVersions(DictionaryVersions) version}
+ * changes.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class SearchResultCache {
+
+    /**
+     * The default maximum number of cached results.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 2000;
+    /**
+     * The default maximum size of cached results, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    /**
+     * The cached results, ordered from the least recently used.
+     */
+    private final LinkedHashMap<Key, Value> cache = new LinkedHashMap<Key, Value>(16, 0.75f, true);
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    /**
+     * Approximate size of all cached results.
+     */
+    private long bytes = 0;
+    private int hitCount = 0;
+    private int emptyHitCount = 0;
+    private int missCount = 0;
+    private int evictionCount = 0;
+
+    /**
+     * Identifies a search result.
+     */
+    static final class Key {
+
+        final Dictionary dictionary;
+        final SearchQuery query;
+        final int maxResults;
+        final boolean sort;
+        private final int hash;
+
+        /**
+         * Creates the key.
+         *
+         * @param dictionary
+         *            the dictionary, not null.
+         * @param query
+         *            the query, not null. The query is copied, therefore it
+         *            may be modified afterwards.
+         * @param maxResults
+         *            the maximum number of results.
+         * @param sort
+         *            if true then the results are sorted.
+         */
+        Key(final Dictionary dictionary, final SearchQuery query, final int maxResults, final boolean sort) {
+            this.dictionary = dictionary;
+            this.query = new SearchQuery(query);
+            this.maxResults = maxResults;
+            this.sort = sort;
+            hash = ((dictionary.hashCode() * 31 + this.query.hashCode()) * 31 + maxResults) * 2 + (sort ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && maxResults == other.maxResults && sort == other.sort && dictionary.equals(other.dictionary) && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached result.
+     */
+    private static final class Value {
+
+        final List<DictEntry> result;
+        final long bytes;
+
+        Value(final List<DictEntry> result) {
+            this.result = result;
+            bytes = estimateSize(result);
+        }
+    }
+
+    /**
+     * Estimates the heap size of given result list.
+     *
+     * @param result
+     *            the result list.
+     * @return the approximate size in bytes.
+     */
+    static long estimateSize(final List<DictEntry> result) {
+        // the list, the key and the map entry
+        long size = 128;
+        for (final DictEntry entry : result) {
+            size += 48 + sizeOf(entry.kanji) + sizeOf(entry.reading) + sizeOf(entry.english);
+        }
+        return size;
+    }
+
+    private static long sizeOf(final String s) {
+        return s == null ? 0 : 40 + 2 * s.length();
+    }
+
+    /**
+     * Checks if the cache is enabled.
+     *
+     * @return false if the cache is configured to hold no results.
+     */
+    public synchronized boolean isEnabled() {
+        return maxEntries > 0 && maxBytes > 0;
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param key
+     *            the key, not null.
+     * @return a copy of the cached result, or null if there is no such result
+     *         cached.
+     */
+    synchronized List<DictEntry> get(final Key key) {
+        final Value value = cache.get(key);
+        if (value == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        if (value.result.isEmpty()) {
+            emptyHitCount++;
+        }
+        return new ArrayList<DictEntry>(value.result);
+    }
+
+    /**
+     * Caches a result. Does nothing if the result contains an error entry.
+     *
+     * @param key
+     *            the key, not null.
+     * @param result
+     *            the result, not null. The list is copied.
+     */
+    void put(final Key key, final List<DictEntry> result) {
+        put(key, result, null);
+    }
+
+    /**
+     * Caches a result. Does nothing if the result contains an error entry or
+     * if the index the result was computed from has been invalidated.
+     *
+     * @param key
+     *            the key, not null.
+     * @param result
+     *            the result, not null. The list is copied.
+     * @param source
+     *            the index the result was computed from, may be null. Checked
+     *            under the cache lock: an invalidation marks the index before
+     *            it removes the results of the dictionary from the cache,
+     *            therefore a stale result is either rejected here or removed
+     *            by the invalidation.
+     */
+    synchronized void put(final Key key, final List<DictEntry> result, final LuceneSearchRegistry.Entry source) {
+        if (!isEnabled() || (source != null && source.isInvalid)) {
+            return;
+        }
+        for (final DictEntry entry : result) {
+            if (!entry.isValid()) {
+                return;
+            }
+        }
+        final Value value = new Value(new ArrayList<DictEntry>(result));
+        if (value.bytes > maxBytes) {
+            return;
+        }
+        final Value old = cache.put(key, value);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += value.bytes;
+        evict();
+    }
+
+    /**
+     * Removes the least recently used results until the cache fits the
+     * limits.
+     */
+    private void evict() {
+        for (final Iterator<Value> i = cache.values().iterator(); i.hasNext() && (cache.size() > maxEntries || bytes > maxBytes);) {
+            bytes -= i.next().bytes;
+            i.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Removes all cached results of given dictionary.
+     *
+     * @param dictionary
+     *            the dictionary, not null.
+     */
+    synchronized void invalidate(final Dictionary dictionary) {
+        for (final Iterator<Map.Entry<Key, Value>> i = cache.entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<Key, Value> e = i.next();
+            if (e.getKey().dictionary.equals(dictionary)) {
+                bytes -= e.getValue().bytes;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Sets the cache limits. Results are evicted if necessary.
+     *
+     * @param maxEntries
+     *            the maximum number of cached results. Zero disables the
+     *            cache.
+     * @param maxBytes
+     *            the maximum approximate size of cached results in bytes.
+     *            Zero disables the cache.
+     */
+    public synchronized void setLimits(final int maxEntries, final long maxBytes) {
+        Check.checkTrue("maxEntries must not be negative", maxEntries >= 0);
+        Check.checkTrue("maxBytes must not be negative", maxBytes >= 0);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of cached results.
+     *
+     * @return the maximum number of cached results.
+     */
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum approximate size of cached results.
+     *
+     * @return the maximum size in bytes.
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return the number of cached results.
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the approximate size of all cached results.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of searches served from the cache.
+     *
+     * @return the hit count.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of searches served from the cache which returned an
+     * empty result. Included in {@link #getHitCount()}.
+     *
+     * @return the empty hit count.
+     */
+    public synchronized int getEmptyHitCount() {
+        return emptyHitCount;
+    }
+
+    /**
+     * Returns the number of searches not found in the cache.
+     *
+     * @return the miss count.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of results evicted because of the cache limits.
+     *
+     * @return the eviction count.
+     */
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SearchResultCache{size=" + cache.size() + ", bytes=" + bytes + ", hits=" + hitCount + " (empty " + emptyHitCount + "), misses=" + missCount + ", evictions=" + evictionCount + ", maxEntries=" + maxEntries + ", maxBytes=" + maxBytes + "}";
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+/**
+ * Enumerates the ways a search is served, see {@link SearchMetrics#source}.
+ *
+ * @author Martin Vysny
+ */
+public enum SearchSourceEnum {
+
+    /**
+     * A single query searched in the index by
+     * {@link LuceneSearch#search(SearchQuery, int)} and its variants.
+     */
+    Index,
+    /**
+     * A single query served from the {@link SearchResultCache}. Only the
+     * {@link SearchPhaseEnum#Total} duration is measured.
+     */
+    Cache,
+    /**
+     * All queries of a {@link LuceneSearch#searchBatch(java.util.List, int)
+     * batch} which were not found in the cache, measured as a whole.
+     */
+    Batch,
+    /**
+     * A {@link SearchCursor}, measured when it is closed. Only the time spent
+     * in the cursor is measured, not the time between the calls.
+     */
+    Cursor
+}
@@ -156,6 +156,52 @@ public final class KanjiUtils {
         }
         return result.toString();
     }
+    /**
+     * The hiragana characters, grouped by their vowel. Used to canonicalize
+     * the long vowel mark.
+     */
+    private static final String[] HIRAGANA_VOWELS = {
+        "あぁかがさざただなはばぱまやゃらわゎゕ",
+        "いぃきぎしじちぢにひびぴみりゐ",
+        "うぅくぐすずつづぬふぶぷむゆゅるゔ",
+        "えぇけげせぜてでねへべぺめれゑゖ",
+        "おぉこごそぞとどのほぼぽもよょろを"};
+
+    /**
+     * Normalizes kana in given string to a single script. Half-width
+     * katakana is converted to full-width katakana, katakana is converted to
+     * hiragana and the long vowel mark (ー) following a kana character is
+     * replaced by the vowel of that character. Other characters (kanji,
+     * latin etc) are unchanged.
+     * <p/>
+     * The katakana and the hiragana form of a word (e.g. ラーメン and らあめん)
+     * therefore yield the same string.
+     *
+     * @param text
+     *            the text to normalize, not null.
+     * @return normalized text, never null.
+     */
+    public static String normalizeKana(final String text) {
+        final String fullwidth = halfwidthToKatakana(text);
+        final StringBuilder result = new StringBuilder(fullwidth.length());
+        for (int i = 0; i < fullwidth.length(); i++) {
+            char ch = fullwidth.charAt(i);
+            if (ch >= 'ァ' && ch <= 'ヶ') {
+                // the katakana block is the hiragana block shifted by 0x60
+                ch -= 0x60;
+            } else if (ch == 'ー' && result.length() > 0) {
+                final char prev = result.charAt(result.length() - 1);
+                for (int vowel = 0; vowel < HIRAGANA_VOWELS.length; vowel++) {
+                    if (HIRAGANA_VOWELS[vowel].indexOf(prev) >= 0) {
+                        ch = HIRAGANA_VOWELS[vowel].charAt(0);
+                        break;
+                    }
+                }
+            }
+            result.append(ch);
+        }
+        return result.toString();
+    }
 
     /**
      * Checks whether given character is a kana character:
@@ -292,6 +292,135 @@ public enum RomanizationEnum {
         return sb.toString();
     }
 
+    /**
+     * Computes a canonical romaji key of given romaji text. The Hepburn and
+     * the Nihon-Shiki spellings of the same word yield the same key (e.g.
+     * <code>shinbun</code>, <code>shimbun</code> and <code>sinbun</code> all
+     * yield <code>sinbun</code>). The key of a kana text is computed by
+     * {@link #kanaToRomajiKey(String)}.
+     * <p/>
+     * The key is Nihon-Shiki-like: sh/ch/j/ts/f are folded to s/t/z/t/h, m
+     * before b/p is folded to n, a hyphen after a vowel repeats the vowel and
+     * the apostrophe is kept only where it separates the syllabic n from a
+     * following vowel or y.
+     *
+     * @param romaji
+     *            the romaji text, not null.
+     * @return the key, never null.
+     */
+    public static String toRomajiKey(final String romaji) {
+        final String s = romaji.toLowerCase();
+        final StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            final char next = i + 1 < s.length() ? s.charAt(i + 1) : 0;
+            final char next2 = i + 2 < s.length() ? s.charAt(i + 2) : 0;
+            if (c == '\'') {
+                if (i > 0 && s.charAt(i - 1) == 'n' && (isVowel(next) || next == 'y')) {
+                    sb.append(c);
+                }
+            } else if (c == 'x') {
+                // the xn, xji, xzu writings, see getWriting(); x after n is
+                // a syllable separator
+                if (i > 0 && s.charAt(i - 1) == 'n' && (isVowel(next) || next == 'y')) {
+                    sb.append('\'');
+                } else if (next == 'n') {
+                    sb.append('n');
+                    if (isVowel(next2) || next2 == 'y') {
+                        sb.append('\'');
+                    }
+                    i++;
+                }
+            } else if (c == '-' && sb.length() > 0 && isVowel(sb.charAt(sb.length() - 1))) {
+                // the long vowel mark
+                sb.append(sb.charAt(sb.length() - 1));
+            } else if (c == 'm' && (next == 'b' || next == 'p')) {
+                sb.append('n');
+            } else if (c == 'n' && next == 'n' && !isVowel(next2) && next2 != 'y' && next2 != 'n') {
+                // the IME-style nn before a consonant
+                sb.append('n');
+                i++;
+            } else if ((c == 'c' || c == 't') && next == 'c' && next2 == 'h') {
+                // the doubled ch: cchi, tchi
+                sb.append('t');
+            } else if ((c == 's' || c == 'c') && next == 'h') {
+                sb.append(c == 's' ? 's' : 't');
+                if (next2 != 'i') {
+                    sb.append('y');
+                }
+                i++;
+            } else if (c == 'j') {
+                sb.append('z');
+                if (next != 'j' && next != 'i') {
+                    sb.append('y');
+                }
+            } else if (c == 'd' && (next == 'i' || next == 'u' || next == 'y')) {
+                // the Nihon-Shiki di/du are the Hepburn ji/zu
+                sb.append('z');
+            } else if (c == 't' && next == 's' && next2 == 'u') {
+                sb.append('t');
+                i++;
+            } else if (c == 'f' && (next == 'u' || next == 'f')) {
+                sb.append('h');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Computes a canonical {@link #toRomajiKey(String) romaji key} of given
+     * kana text, in hiragana, katakana or half-width katakana. A syllabic n
+     * followed by a vowel or y is written as <code>n'</code>.
+     *
+     * @param kana
+     *            the kana text, not null.
+     * @return the key, never null. Contains non-ascii characters if the text
+     *         contains characters which cannot be romanized (kanji etc).
+     */
+    public static String kanaToRomajiKey(final String kana) {
+        final String hiragana = KanjiUtils.normalizeKana(kana);
+        final StringBuilder sb = new StringBuilder(hiragana.length() * 2);
+        int start = 0;
+        for (int i = 0; i <= hiragana.length(); i++) {
+            if (i < hiragana.length() && hiragana.charAt(i) != 'ん') {
+                continue;
+            }
+            sb.append(Hepburn.toRomaji(hiragana.substring(start, i)));
+            if (i < hiragana.length()) {
+                sb.append('n');
+                if (i + 1 < hiragana.length() && "あいうえおやゆよ".indexOf(hiragana.charAt(i + 1)) >= 0) {
+                    sb.append('\'');
+                }
+            }
+            start = i + 1;
+        }
+        return toRomajiKey(sb.toString());
+    }
+
+    /**
+     * Checks if given string is a romaji text which has a meaningful
+     * {@link #toRomajiKey(String) romaji key}.
+     *
+     * @param text
+     *            the text, not null.
+     * @return true if the text is not empty and contains only ascii letters,
+     *         apostrophes and hyphens.
+     */
+    public static boolean isRomaji(final String text) {
+        if (text.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (!MiscUtils.isAsciiLetter(c) && c != '\'' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns a hint on how to write given katakana/hiragana character in
      * romaji so that it may be properly translated back. For example querying
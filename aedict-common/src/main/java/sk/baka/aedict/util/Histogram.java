@@ -0,0 +1,162 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative long values (e.g. durations in nanoseconds),
+ * able to report percentiles. The values are counted in logarithmic buckets
+ * with 32 linear sub-buckets each, therefore the reported percentiles are
+ * accurate within about 3%, in a constant memory.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class Histogram {
+
+    /**
+     * log2 of the number of sub-buckets.
+     */
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /**
+     * Values lower than this are counted exactly.
+     */
+    private static final int LINEAR = SUB_COUNT * 2;
+    private final long[] counts = new long[LINEAR + (64 - SUB_BITS - 1) * SUB_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    private static int bucketOf(final long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Returns the highest value counted in given bucket.
+     */
+    private static long upperBound(final int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        final int exponent = (bucket - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+        final long sub = (bucket - LINEAR) % SUB_COUNT;
+        final long lower = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            the value. Negative values are recorded as zero.
+     */
+    public synchronized void record(final long value) {
+        final long v = Math.max(0, value);
+        counts[bucketOf(v)]++;
+        count++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Returns the value at given percentile.
+     *
+     * @param percentile
+     *            the percentile, 0..100.
+     * @return the highest value of the bucket containing the percentile,
+     *         capped to the maximum recorded value. 0 if nothing has been
+     *         recorded.
+     */
+    public synchronized long getPercentile(final double percentile) {
+        Check.checkTrue("percentile must be within 0..100", percentile >= 0 && percentile <= 100);
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the lowest recorded value.
+     *
+     * @return the minimum, 0 if nothing has been recorded.
+     */
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the highest recorded value.
+     *
+     * @return the maximum, 0 if nothing has been recorded.
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, 0 if nothing has been recorded.
+     */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "count=" + count + ", min=" + getMin() + ", p50=" + getPercentile(50) + ", p95=" + getPercentile(95) + ", p99=" + getPercentile(99) + ", max=" + max;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses values compressed by the Lucene
+ * <code>CompressionTools.compressString()</code>. Unlike the
+ * <code>CompressionTools.decompressString()</code>, the {@link Inflater}
+ * instances and the output buffers are pooled and reused.
+ * <p/>
+ * Thread-safe.
+ *
+ * @author Martin Vysny
+ */
+public final class InflaterPool {
+
+    private InflaterPool() {
+        throw new AssertionError();
+    }
+    /**
+     * Maximum number of idle decompressors kept in the pool.
+     */
+    private static final int MAX_POOL_SIZE = 4;
+    /**
+     * Idle decompressors.
+     */
+    private static final List<Decompressor> POOL = new ArrayList<Decompressor>(MAX_POOL_SIZE);
+
+    /**
+     * Decompresses an UTF-8 string.
+     *
+     * @param value
+     *            the compressed value, not null.
+     * @return decompressed string, never null.
+     * @throws DataFormatException
+     *             if the data is not a valid compressed data.
+     */
+    public static String decompressString(final byte[] value) throws DataFormatException {
+        final Decompressor d = borrow();
+        try {
+            return d.decompressString(value);
+        } finally {
+            giveBack(d);
+        }
+    }
+
+    private static Decompressor borrow() {
+        synchronized (POOL) {
+            if (!POOL.isEmpty()) {
+                return POOL.remove(POOL.size() - 1);
+            }
+        }
+        return new Decompressor();
+    }
+
+    private static void giveBack(final Decompressor d) {
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOL_SIZE) {
+                POOL.add(d);
+                return;
+            }
+        }
+        d.inflater.end();
+    }
+
+    /**
+     * An inflater with its output buffer.
+     */
+    private static final class Decompressor {
+
+        final Inflater inflater = new Inflater();
+        byte[] buffer = new byte[1024];
+
+        String decompressString(final byte[] value) throws DataFormatException {
+            inflater.reset();
+            inflater.setInput(value);
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    final byte[] newBuffer = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, newBuffer, 0, length);
+                    buffer = newBuffer;
+                }
+                final int count = inflater.inflate(buffer, length, buffer.length - length);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed data");
+                }
+                length += count;
+            }
+            try {
+                return new String(buffer, 0, length, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+    }
+}
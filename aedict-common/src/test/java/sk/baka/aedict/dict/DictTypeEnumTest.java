@@ -19,10 +19,18 @@ package sk.baka.aedict.dict;
 
 import static org.junit.Assert.*;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
+import org.apache.lucene.search.Query;
 import org.junit.Test;
+import sk.baka.aedict.kanji.RomanizationEnum;
 import sk.baka.tools.test.Assert;
 
 /**
@@ -137,7 +145,7 @@ public class DictTypeEnumTest {
         q.query = new String[]{"foo", "bar"};
         q.isJapanese = true;
         q.validate();
-        Assert.assertArrayEquals(DictTypeEnum.Edict.getLuceneQuery(q), new String[]{"(jp:\"WfooW\" OR jp:\"WbarW\") AND common:t", "(jp:\"WfooW\" OR jp:\"WbarW\") AND common:f"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q)), new String[]{"+(jp:wfoow jp:wbarw) +common:t", "+(jp:wfoow jp:wbarw) +common:f"});
     }
 
     @Test
@@ -147,7 +155,7 @@ public class DictTypeEnumTest {
         q.query = new String[]{"foo AND goo", "bar"};
         q.isJapanese = true;
         q.validate();
-        Assert.assertArrayEquals(DictTypeEnum.Edict.getLuceneQuery(q), new String[]{"((jp:Wfoo AND jp:Wgoo) OR jp:\"Wbar\") AND common:t", "((jp:Wfoo AND jp:Wgoo) OR jp:\"Wbar\") AND common:f"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q)), new String[]{"+((+jp:wfoo +jp:wgoo) jp:wbar) +common:t", "+((+jp:wfoo +jp:wgoo) jp:wbar) +common:f"});
     }
 
     @Test
@@ -155,17 +163,220 @@ public class DictTypeEnumTest {
         final SearchQuery q = new SearchQuery(DictTypeEnum.Tanaka);
         q.query = new String[]{"foo", "bar"};
         q.isJapanese = true;
-        Assert.assertArrayEquals(DictTypeEnum.Tanaka.getLuceneQuery(q), new String[]{"(japanese:\"foo\") OR (jp-deinflected:\"foo\") OR (japanese:\"bar\") OR (jp-deinflected:\"bar\")"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q)), new String[]{"japanese:foo jp-deinflected:foo japanese:bar jp-deinflected:bar"});
         q.isJapanese = false;
-        Assert.assertArrayEquals(DictTypeEnum.Tanaka.getLuceneQuery(q), new String[]{"(english:\"foo\") OR (english:\"bar\")"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q)), new String[]{"english:foo english:bar"});
     }
     @Test
     public void testTanakaAndQueryCreator() {
         final SearchQuery q = new SearchQuery(DictTypeEnum.Tanaka);
         q.query = new String[]{"foo AND goo", "bar"};
         q.isJapanese = true;
-        Assert.assertArrayEquals(DictTypeEnum.Tanaka.getLuceneQuery(q), new String[]{"(japanese:\"foo\" AND japanese:\"goo\") OR (jp-deinflected:\"foo\" AND jp-deinflected:\"goo\") OR (japanese:\"bar\") OR (jp-deinflected:\"bar\")"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q)), new String[]{"(+japanese:foo +japanese:goo) (+jp-deinflected:foo +jp-deinflected:goo) japanese:bar jp-deinflected:bar"});
         q.isJapanese = false;
-        Assert.assertArrayEquals(DictTypeEnum.Tanaka.getLuceneQuery(q), new String[]{"(english:\"foo\" AND english:\"goo\") OR (english:\"bar\")"});
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q)), new String[]{"(+english:foo +english:goo) english:bar"});
+    }
+
+    @Test
+    public void testEnglishEdictQueryCreator() {
+        final SearchQuery q = SearchQuery.searchEnEdict("the Mother AND go", false);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q)), new String[]{"+(+contents:mother +contents:go) +common:t", "+(+contents:mother +contents:go) +common:f"});
+        q.query = new String[]{"pretty girl"};
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q)), new String[]{"+contents:\"pretty girl\" +common:t", "+contents:\"pretty girl\" +common:f"});
+        // stop words only: just the common filter remains
+        q.query = new String[]{"a"};
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q)), new String[]{"common:t", "common:f"});
+    }
+
+    @Test
+    public void testKanjidicQueryCreator() {
+        final SearchQuery q = new SearchQuery(DictTypeEnum.Kanjidic);
+        q.query = new String[]{"母"};
+        Assert.assertArrayEquals(toString(DictTypeEnum.Kanjidic.getLuceneQuery(q)), new String[]{"kanji:母"});
+        q.query = null;
+        q.strokeCount = 9;
+        q.strokesPlusMinus = 1;
+        q.skip = "1-2-3";
+        q.radical = 5;
+        Assert.assertArrayEquals(toString(DictTypeEnum.Kanjidic.getLuceneQuery(q)), new String[]{"+(strokes:8 strokes:9 strokes:10) +skip:1-2-3 +radical:5"});
+    }
+
+    @Test
+    public void glossMatchingEqualsExactEdictMatching() {
+        final String[] lines = new String[]{"QUERYQUERY", "QUERY QUERY", "query-query", "query'query", "query.query", "query,query", "query; query",
+            "foo-bar-baz [f] (p) query; query", "(n) (hum) mother/(P)", "(v5k-s,vi) (1) to go; to move/(2) to go on foot/(P)", "(n) one's mother/mom"};
+        final String[] queries = new String[]{"query", "QUERY QUERY", "foo-bar-baz", "p", "mother", "to go", "to move", "go", "to go on foot", "foot", "one's mother", "mom", "mother AND mom", "to go AND p"};
+        for (final String line : lines) {
+            final Set<String> glosses = EdictEntry.getGlosses(line);
+            for (final String query : queries) {
+                boolean glossMatches = true;
+                for (final String term : query.split("\\s+AND\\s+")) {
+                    glossMatches &= glosses.contains(EdictEntry.toGloss(term));
+                }
+                assertEquals(query + " in " + line, matches(query, line), glossMatches);
+            }
+        }
+    }
+
+    @Test
+    public void testGlossConversion() {
+        assertEquals("to go", EdictEntry.toGloss("  To   GO "));
+        assertNull(EdictEntry.toGloss("to go;"));
+        assertNull(EdictEntry.toGloss("  "));
+        // digits terminate the gloss as well
+        assertEquals(new HashSet<String>(Arrays.asList("v", "k-s,vi", "to go", "to move", "p")), EdictEntry.getGlosses("(v5k-s,vi) (1) to go; to move/(P)"));
+        // whitespaces are normalized
+        assertEquals(new HashSet<String>(Arrays.asList("to go on foot")), EdictEntry.getGlosses(" To  go\ton foot "));
+    }
+
+    @Test
+    public void testEnglishEdictGlossQueryCreator() {
+        final Set<String> fields = new HashSet<String>(Arrays.asList("contents", "jp", "common", "gloss"));
+        final SearchQuery q = SearchQuery.searchEnEdict("To Go AND p", true);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+(+gloss:to go +gloss:p) +common:t", "+(+gloss:to go +gloss:p) +common:f"});
+        // the index does not contain the gloss field
+        assertFalse(DictTypeEnum.Edict.isExact(q, Collections.<String>emptySet()));
+        // the query cannot be matched by a single gloss
+        q.query = new String[]{"to go; to move"};
+        assertFalse(DictTypeEnum.Edict.isExact(q, fields));
+        q.query = new String[]{"to go"};
+        q.matcher = MatcherEnum.Substring;
+        assertFalse(DictTypeEnum.Edict.isExact(q, fields));
+    }
+
+    @Test
+    public void testJapaneseEdictHeadwordQueryCreator() {
+        final Set<String> fields = new HashSet<String>(Arrays.asList("contents", "jp", "common", "headword", "headword-rev", "rank"));
+        SearchQuery q = SearchQuery.searchJpEdict("母 AND はは", MatcherEnum.Exact);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+headword:母 +headword:はは"});
+        q = SearchQuery.searchJpEdict("はは", MatcherEnum.StartsWith);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword:はは*"});
+        q = SearchQuery.searchJpEdict("母親", MatcherEnum.EndsWith);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword-rev:親母*"});
+        // the substring search still uses the analyzed field
+        q = SearchQuery.searchJpEdict("はは", MatcherEnum.Substring);
+        assertFalse(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"jp:\"は は\""});
+        // older indices do not contain the headword fields
+        assertFalse(DictTypeEnum.Edict.isExact(SearchQuery.searchJpEdict("はは", MatcherEnum.Exact), Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testJapaneseBigramQueryCreator() {
+        assertEquals(Arrays.asList("はは", "はお", "おや"), QueryUtils.bigrams("ははおや"));
+        assertTrue(QueryUtils.bigrams("は").isEmpty());
+        final Set<String> fields = new HashSet<String>(Arrays.asList("contents", "jp", "jp-bigram", "rank"));
+        SearchQuery q = SearchQuery.searchJpEdict("ははおや AND ＣＤ", MatcherEnum.Substring);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+jp-bigram:\"はは はお おや\" +jp-bigram:ｃｄ"});
+        // a single character is matched by the analyzed field and filtered
+        q = SearchQuery.searchJpEdict("母 AND はは", MatcherEnum.Substring);
+        assertFalse(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+jp:母 +jp-bigram:はは"});
+        // the deinflected words are not searched when the query is exact
+        q = SearchQuery.searchTanaka(DictTypeEnum.Tanaka, "きれい", true, RomanizationEnum.Hepburn, null);
+        q.query = new String[]{"きれい"};
+        assertTrue(DictTypeEnum.Tanaka.isExact(q, Collections.singleton("japanese-bigram")));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q, Collections.singleton("japanese-bigram"))), new String[]{"japanese-bigram:\"きれ れい\""});
+        assertFalse(DictTypeEnum.Tanaka.isExact(q, Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testKanaNormalizedQueryCreator() {
+        final Set<String> fields = new HashSet<String>(Arrays.asList("contents", "jp", "jp-bigram", "jp-kana-bigram", "headword", "headword-rev", "headword-kana", "headword-kana-rev", "rank"));
+        // the katakana/hiragana pair collapses into a single term
+        SearchQuery q = SearchQuery.searchJpRomaji("haha AND oya", RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        assertEquals(2, q.query.length);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+headword-kana:はは +headword-kana:おや"});
+        q = SearchQuery.searchJpRomaji("raamen", RomanizationEnum.Hepburn, MatcherEnum.EndsWith);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword-kana-rev:んめあら*"});
+        q = SearchQuery.searchJpRomaji("haha", RomanizationEnum.Hepburn, MatcherEnum.Substring);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"jp-kana-bigram:はは"});
+        // a single character is matched by the analyzed field, in both scripts
+        q = SearchQuery.searchJpRomaji("ha", RomanizationEnum.Hepburn, MatcherEnum.Substring);
+        assertFalse(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"jp:ハ jp:は"});
+        // a katakana query must not match hiragana
+        q = SearchQuery.searchJpEdict("ハハ", MatcherEnum.Exact);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword:ハハ"});
+        // older indices do not contain the kana-normalized fields
+        q = SearchQuery.searchJpRomaji("haha", RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, new HashSet<String>(Arrays.asList("headword", "headword-rev", "rank")))), new String[]{"headword:ハハ headword:はは"});
+        q = SearchQuery.searchTanaka(DictTypeEnum.Tanaka, "kirei", true, RomanizationEnum.Hepburn, null);
+        assertTrue(DictTypeEnum.Tanaka.isExact(q, Collections.singleton("japanese-kana-bigram")));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tanaka.getLuceneQuery(q, Collections.singleton("japanese-kana-bigram"))), new String[]{"japanese-kana-bigram:\"きれ れい\""});
+    }
+
+    @Test
+    public void testRomajiQueryCreator() {
+        final Set<String> fields = new HashSet<String>(Arrays.asList("contents", "jp", "headword", "headword-rev", "headword-kana", "headword-kana-rev", "romaji", "rank"));
+        SearchQuery q = SearchQuery.searchJpRomaji("shimbun AND jishin", RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        assertTrue(DictTypeEnum.Edict.isExact(q, fields));
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"+romaji:sinbun +romaji:zisin"});
+        q = SearchQuery.searchJpRomaji("sinbun", RomanizationEnum.NihonShiki, MatcherEnum.Exact);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"romaji:sinbun"});
+        // only the exact lookup uses the romaji keys
+        q = SearchQuery.searchJpRomaji("haha", RomanizationEnum.Hepburn, MatcherEnum.StartsWith);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword-kana:はは*"});
+        // kanji cannot be looked up by the romaji key
+        q = SearchQuery.searchJpRomaji("母", RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword:母"});
+        // older indices do not contain the romaji field
+        q = SearchQuery.searchJpRomaji("haha", RomanizationEnum.Hepburn, MatcherEnum.Exact);
+        fields.remove("romaji");
+        Assert.assertArrayEquals(toString(DictTypeEnum.Edict.getLuceneQuery(q, fields)), new String[]{"headword-kana:はは"});
+    }
+
+    @Test
+    public void testTatoebaPerLanguageQueryCreator() {
+        final Set<String> fields = new HashSet<String>(Arrays.asList("japanese", "japanese-bigram", "jp-deinflected", "translation-eng", "translation-deu", "langs"));
+        SearchQuery q = SearchQuery.searchTanaka(DictTypeEnum.Tatoeba, "mother", false, null, "deu");
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tatoeba.getLuceneQuery(q, fields)), new String[]{"translation-deu:mother translation-eng:mother"});
+        q = SearchQuery.searchTanaka(DictTypeEnum.Tatoeba, "mother", false, null, null);
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tatoeba.getLuceneQuery(q, fields)), new String[]{"translation-eng:mother"});
+        // no query, no results
+        q = SearchQuery.searchTanaka(DictTypeEnum.Tatoeba, "mother", false, null, "deu");
+        q.query = new String[0];
+        assertNull(DictTypeEnum.Tatoeba.getLuceneQuery(q, fields)[0]);
+        // older indices store all translations in a single field
+        q = SearchQuery.searchTanaka(DictTypeEnum.Tatoeba, "mother", false, null, "deu");
+        Assert.assertArrayEquals(toString(DictTypeEnum.Tatoeba.getLuceneQuery(q, new HashSet<String>(Arrays.asList("japanese", "translations", "jp-deinflected")))), new String[]{"translations:mother"});
+    }
+
+    @Test
+    public void tatoebaEntryLoadsRequestedLanguage() {
+        final Document doc = new Document();
+        doc.add(new Field("japanese", "母です。", Field.Store.YES, Field.Index.ANALYZED));
+        doc.add(new Field("translation-eng", "It's mother.", Field.Store.YES, Field.Index.ANALYZED));
+        doc.add(new Field("translation-deu", "Es ist Mutter.", Field.Store.YES, Field.Index.ANALYZED));
+        assertEquals("Es ist Mutter.", DictTypeEnum.Tatoeba.getEntry(doc, "deu").english);
+        assertEquals("It's mother.", DictTypeEnum.Tatoeba.getEntry(doc, null).english);
+        // falls back to English
+        assertEquals("It's mother.", DictTypeEnum.Tatoeba.getEntry(doc, "fra").english);
+        final Document old = new Document();
+        old.add(new Field("japanese", "母です。", Field.Store.YES, Field.Index.ANALYZED));
+        old.add(new Field("translations", "eng: It's mother.\ndeu: Es ist Mutter.", Field.Store.YES, Field.Index.ANALYZED));
+        assertEquals("Es ist Mutter.", DictTypeEnum.Tatoeba.getEntry(old, "deu").english);
+        assertEquals("It's mother.", DictTypeEnum.Tatoeba.getEntry(old, "fra").english);
+    }
+
+    @Test
+    public void tatoebaFieldSelectorLoadsRequestedLanguageOnly() {
+        final FieldSelector selector = DictTypeEnum.Tatoeba.getFieldSelector("deu");
+        assertSame(selector, DictTypeEnum.Tatoeba.getFieldSelector("deu"));
+        assertEquals(FieldSelectorResult.LOAD, selector.accept("translation-deu"));
+        assertEquals(FieldSelectorResult.NO_LOAD, selector.accept("translation-fra"));
+    }
+
+    private static String[] toString(final Query[] queries) {
+        final String[] result = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            result[i] = queries[i].toString();
+        }
+        return result;
     }
 }
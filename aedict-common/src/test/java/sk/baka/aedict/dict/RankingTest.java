@@ -0,0 +1,88 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Ranking} class.
+ * @author Martin Vysny
+ */
+public class RankingTest {
+
+    private static final String CHARS = "母父日本語はあアカ漢字";
+
+    private static List<DictEntry> randomEntries(final int count) {
+        final Random r = new Random(42);
+        final List<DictEntry> result = new ArrayList<DictEntry>();
+        for (int i = 0; i < count; i++) {
+            if (r.nextInt(20) == 0) {
+                result.add(DictEntry.newErrorMsg("error " + r.nextInt(3)));
+                continue;
+            }
+            final StringBuilder jp = new StringBuilder();
+            for (int j = r.nextInt(4); j >= 0; j--) {
+                jp.append(CHARS.charAt(r.nextInt(CHARS.length())));
+            }
+            final Boolean common = r.nextBoolean() ? null : r.nextBoolean();
+            result.add(r.nextBoolean() ? new DictEntry(jp.toString(), "よみ", "english " + i, common) : new DictEntry(null, jp.toString(), "english " + i, common));
+        }
+        return result;
+    }
+
+    @Test
+    public void sortEqualsCollectionsSort() {
+        final List<DictEntry> entries = randomEntries(2000);
+        final List<DictEntry> expected = new ArrayList<DictEntry>(entries);
+        Collections.sort(expected);
+        assertSame(entries, Ranking.sort(entries));
+        assertIdentical(expected, entries);
+    }
+
+    @Test
+    public void topEqualsSortedPrefix() {
+        final List<DictEntry> entries = randomEntries(2000);
+        final List<DictEntry> sorted = new ArrayList<DictEntry>(entries);
+        Collections.sort(sorted);
+        for (final int count : new int[]{0, 1, 10, 100, 1999, 2000, 5000}) {
+            assertIdentical(sorted.subList(0, Math.min(count, sorted.size())), Ranking.top(entries, count));
+        }
+    }
+
+    @Test
+    public void sortKeyOrder() {
+        final DictEntry common = new DictEntry("母", "はは", "mother", true);
+        final DictEntry uncommon = new DictEntry("母", "はは", "mother", false);
+        final DictEntry longer = new DictEntry("母親", "ははおや", "mother", true);
+        assertTrue(Ranking.getSortKey(common) < Ranking.getSortKey(uncommon));
+        assertTrue(Ranking.getSortKey(common) < Ranking.getSortKey(longer));
+        assertTrue(Ranking.getSortKey(uncommon) < Ranking.getSortKey(DictEntry.newErrorMsg("error")));
+    }
+
+    private static void assertIdentical(final List<DictEntry> expected, final List<DictEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("at " + i, expected.get(i), actual.get(i));
+        }
+    }
+}
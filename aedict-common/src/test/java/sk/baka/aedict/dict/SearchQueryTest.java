@@ -20,6 +20,7 @@ package sk.baka.aedict.dict;
 import org.junit.Test;
 import sk.baka.aedict.kanji.RomanizationEnum;
 import sk.baka.tools.test.Assert;
+import static org.junit.Assert.*;
 
 /**
  * Tests the {@link SearchQuery} class.
@@ -39,4 +40,38 @@ public class SearchQueryTest {
 	final SearchQuery q = SearchQuery.searchTanaka(DictTypeEnum.Tanaka, "haha AND chichi", true, r, null);
 	Assert.assertArrayEquals(q.query, new String[]{r.toKatakana("haha") + " AND " + r.toKatakana("chichi"), r.toHiragana("haha") + " AND " + r.toHiragana("chichi")});
     }
+
+    @Test
+    public void copyEqualsOriginal() {
+        final SearchQuery q = SearchQuery.searchTanaka(DictTypeEnum.Tatoeba, "mother", false, null, "deu");
+        final SearchQuery copy = new SearchQuery(q);
+        assertEquals(q, copy);
+        assertEquals(q.hashCode(), copy.hashCode());
+        assertEquals("deu", copy.langCode);
+        final SearchQuery k = SearchQuery.kanjiSearch('母', 5, 1);
+        assertEquals(Integer.valueOf(1), new SearchQuery(k).strokesPlusMinus);
+        assertEquals(k, new SearchQuery(k));
+    }
+
+    @Test
+    public void queriesDiffer() {
+        final SearchQuery q = SearchQuery.searchEnEdict("mother", true);
+        assertFalse(q.equals(SearchQuery.searchEnEdict("mother", false)));
+        assertFalse(q.equals(SearchQuery.searchEnEdict("father", true)));
+        assertFalse(SearchQuery.kanjiSearch('母', 5, 1).equals(SearchQuery.kanjiSearch('母', 5, 2)));
+        final SearchQuery copy = new SearchQuery(q);
+        copy.langCode = "deu";
+        assertFalse(q.equals(copy));
+    }
+
+    @Test
+    public void popularQueriesAreValid() {
+        for (final DictTypeEnum dictType : DictTypeEnum.values()) {
+            for (final SearchQuery q : LuceneSearch.getPopularQueries(dictType)) {
+                assertEquals(dictType, q.dictType);
+                q.validate();
+            }
+        }
+        assertFalse(LuceneSearch.getPopularQueries(DictTypeEnum.Edict).isEmpty());
+    }
 }
@@ -0,0 +1,117 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.dict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SearchResultCache} class.
+ * @author Martin Vysny
+ */
+public class SearchResultCacheTest {
+
+    private static final Dictionary EDICT = new Dictionary(DictTypeEnum.Edict, null);
+    private static final Dictionary CUSTOM = new Dictionary(DictTypeEnum.Edict, "custom");
+
+    private static SearchResultCache.Key key(final Dictionary d, final String word) {
+        return new SearchResultCache.Key(d, SearchQuery.searchEnEdict(word, true), 100, false);
+    }
+
+    private static List<DictEntry> result(final String english) {
+        return Arrays.asList(new DictEntry("母", "はは", english));
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        final SearchResultCache c = new SearchResultCache();
+        assertNull(c.get(key(EDICT, "mother")));
+        c.put(key(EDICT, "mother"), result("mother"));
+        final SearchQuery q = SearchQuery.searchEnEdict("mother", true);
+        final SearchResultCache.Key k = new SearchResultCache.Key(EDICT, q, 100, false);
+        // the key must not be affected by the query modification
+        q.query[0] = "father";
+        assertEquals("mother", c.get(k).get(0).english);
+        assertNull(c.get(key(CUSTOM, "mother")));
+        assertNull(c.get(new SearchResultCache.Key(EDICT, SearchQuery.searchEnEdict("mother", true), 10, false)));
+        assertEquals(1, c.getHitCount());
+        assertEquals(3, c.getMissCount());
+    }
+
+    @Test
+    public void emptyResultIsCached() {
+        final SearchResultCache c = new SearchResultCache();
+        c.put(key(EDICT, "xyz"), new ArrayList<DictEntry>());
+        assertEquals(Collections.emptyList(), c.get(key(EDICT, "xyz")));
+        assertEquals(1, c.getEmptyHitCount());
+    }
+
+    @Test
+    public void errorResultIsNotCached() {
+        final SearchResultCache c = new SearchResultCache();
+        c.put(key(EDICT, "mother"), Arrays.asList(DictEntry.newErrorMsg("error")));
+        assertEquals(0, c.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        final SearchResultCache c = new SearchResultCache();
+        c.setLimits(2, SearchResultCache.DEFAULT_MAX_BYTES);
+        c.put(key(EDICT, "a"), result("a"));
+        c.put(key(EDICT, "b"), result("b"));
+        assertNotNull(c.get(key(EDICT, "a")));
+        c.put(key(EDICT, "c"), result("c"));
+        assertEquals(2, c.size());
+        assertNull(c.get(key(EDICT, "b")));
+        assertNotNull(c.get(key(EDICT, "a")));
+        assertNotNull(c.get(key(EDICT, "c")));
+        assertEquals(1, c.getEvictionCount());
+    }
+
+    @Test
+    public void byteLimit() {
+        final SearchResultCache c = new SearchResultCache();
+        final long size = SearchResultCache.estimateSize(result("a"));
+        c.setLimits(100, size * 2);
+        c.put(key(EDICT, "a"), result("a"));
+        c.put(key(EDICT, "b"), result("b"));
+        assertEquals(size * 2, c.getBytes());
+        c.put(key(EDICT, "c"), result("c"));
+        assertEquals(2, c.size());
+        assertEquals(size * 2, c.getBytes());
+        c.setLimits(0, 0);
+        assertFalse(c.isEnabled());
+        assertEquals(0, c.size());
+        assertEquals(0, c.getBytes());
+    }
+
+    @Test
+    public void invalidateDictionary() {
+        final SearchResultCache c = new SearchResultCache();
+        c.put(key(EDICT, "a"), result("a"));
+        c.put(key(CUSTOM, "a"), result("a"));
+        c.invalidate(CUSTOM);
+        assertEquals(1, c.size());
+        assertNotNull(c.get(key(EDICT, "a")));
+        assertEquals(SearchResultCache.estimateSize(result("a")), c.getBytes());
+    }
+}
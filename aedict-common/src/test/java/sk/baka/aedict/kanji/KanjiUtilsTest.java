@@ -96,6 +96,19 @@ public class KanjiUtilsTest {
         assertEquals("FOOBARBAZ", KanjiUtils.halfwidthToKatakana("FOOBARBAZ"));
     }
 
+    @Test
+    public void testNormalizeKana() {
+        assertEquals("らあめん", KanjiUtils.normalizeKana("ラーメン"));
+        assertEquals("らあめん", KanjiUtils.normalizeKana("らあめん"));
+        assertEquals("らあめん", KanjiUtils.normalizeKana("ﾗｰﾒﾝ"));
+        assertEquals("こんぴゅうたあ", KanjiUtils.normalizeKana("コンピューター"));
+        assertEquals("ぱぱ", KanjiUtils.normalizeKana("ﾊﾟﾊﾟ"));
+        assertEquals("ゔぁいおりん", KanjiUtils.normalizeKana("ヴァイオリン"));
+        assertEquals("日本ご", KanjiUtils.normalizeKana("日本ゴ"));
+        assertEquals("ー", KanjiUtils.normalizeKana("ー"));
+        assertEquals("FOO AND ばあ", KanjiUtils.normalizeKana("FOO AND バー"));
+    }
+
     @Test
     public void testJlpt() {
         assertEquals((Integer) 5, KanjiUtils.getJlptLevel('山'));
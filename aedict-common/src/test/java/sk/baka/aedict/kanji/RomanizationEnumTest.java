@@ -18,6 +18,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 package sk.baka.aedict.kanji;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -122,4 +124,41 @@ public class RomanizationEnumTest {
 	assertEquals("ぼんやり", RomanizationEnum.Hepburn.toHiragana("bon'yari"));
 	assertEquals("ぼんやり", RomanizationEnum.NihonShiki.toHiragana("bon'yari"));
     }
+
+    @Test
+    public void testRomajiKey() {
+        // Hepburn and Nihon-Shiki yield the same key
+        assertEquals("sinbun", RomanizationEnum.toRomajiKey("shinbun"));
+        assertEquals("sinbun", RomanizationEnum.toRomajiKey("shimbun"));
+        assertEquals("sinbun", RomanizationEnum.toRomajiKey("Sinbun"));
+        assertEquals("tyotto", RomanizationEnum.toRomajiKey("chotto"));
+        assertEquals("tyotto", RomanizationEnum.toRomajiKey("tyotto"));
+        assertEquals("syuttyou", RomanizationEnum.toRomajiKey("shutchou"));
+        assertEquals("syuttyou", RomanizationEnum.toRomajiKey("shucchou"));
+        assertEquals("zisin", RomanizationEnum.toRomajiKey("jishin"));
+        assertEquals("zisin", RomanizationEnum.toRomajiKey("zisin"));
+        assertEquals("tuzuku", RomanizationEnum.toRomajiKey("tsuzuku"));
+        assertEquals("hune", RomanizationEnum.toRomajiKey("fune"));
+        assertEquals("hanazi", RomanizationEnum.toRomajiKey("hanadi"));
+        assertEquals("raamen", RomanizationEnum.toRomajiKey("ra-men"));
+        // the syllabic n
+        assertEquals("bon'yari", RomanizationEnum.toRomajiKey("bon'yari"));
+        assertEquals("bon'yari", RomanizationEnum.toRomajiKey("bonxyari"));
+        assertEquals("konbanha", RomanizationEnum.toRomajiKey("konnbanha"));
+        assertEquals("konnitiha", RomanizationEnum.toRomajiKey("konnichiha"));
+        assertEquals("kan'i", RomanizationEnum.toRomajiKey("kan'i"));
+        assertEquals("kani", RomanizationEnum.toRomajiKey("kani"));
+        // kana
+        assertEquals("sinbun", RomanizationEnum.kanaToRomajiKey("しんぶん"));
+        assertEquals("tyotto", RomanizationEnum.kanaToRomajiKey("ちょっと"));
+        assertEquals("syuttyou", RomanizationEnum.kanaToRomajiKey("シュッチョウ"));
+        assertEquals("raamen", RomanizationEnum.kanaToRomajiKey("ラーメン"));
+        assertEquals("kan'i", RomanizationEnum.kanaToRomajiKey("かんい"));
+        assertEquals("bon'yari", RomanizationEnum.kanaToRomajiKey("ぼんやり"));
+        assertEquals("konnitiha", RomanizationEnum.kanaToRomajiKey("こんにちは"));
+        assertEquals("hanazi", RomanizationEnum.kanaToRomajiKey("はなぢ"));
+        assertFalse(RomanizationEnum.isRomaji(RomanizationEnum.kanaToRomajiKey("母親")));
+        assertTrue(RomanizationEnum.isRomaji("kan'i"));
+        assertFalse(RomanizationEnum.isRomaji(""));
+    }
 }
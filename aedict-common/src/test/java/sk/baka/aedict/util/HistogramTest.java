@@ -0,0 +1,75 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Histogram} class.
+ * @author Martin Vysny
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        final Histogram h = new Histogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(99));
+        assertEquals(0, h.getMin());
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        final Histogram h = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(1, h.getMin());
+        assertEquals(100, h.getMax());
+        assertEquals(50.5, h.getMean(), 0.0001);
+        assertEquals(50, h.getPercentile(50));
+        assertEquals(100, h.getPercentile(100));
+        assertEquals(1, h.getPercentile(0));
+    }
+
+    @Test
+    public void percentilesAreAccurate() {
+        final Histogram h = new Histogram();
+        final Random r = new Random(42);
+        final long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // a wide range of durations, from microseconds to seconds
+            values[i] = (long) Math.exp(r.nextDouble() * 20) + 1000;
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double p : new double[]{50, 95, 99}) {
+            final long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            final long actual = h.getPercentile(p);
+            assertTrue(p + ": " + expected + " " + actual, actual >= expected && actual <= expected * 1.04);
+        }
+        h.clear();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(50));
+    }
+}
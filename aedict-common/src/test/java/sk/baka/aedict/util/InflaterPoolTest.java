@@ -0,0 +1,47 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.util;
+
+import java.util.zip.DataFormatException;
+import org.apache.lucene.document.CompressionTools;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link InflaterPool} class.
+ *
+ * @author Martin Vysny
+ */
+public class InflaterPoolTest {
+
+    @Test
+    public void decompressString() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append("母はは").append(i);
+        }
+        for (final String s : new String[]{"", "foo", "ぼ、ボ", large.toString(), "bar"}) {
+            assertEquals(s, InflaterPool.decompressString(CompressionTools.compressString(s)));
+        }
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void invalidData() throws Exception {
+        InflaterPool.decompressString(new byte[]{1, 2, 3, 4, 5});
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.document.Field;
+import sk.baka.aedict.dict.QueryUtils;
+
+/**
+ * Produces lower-cased {@link QueryUtils#bigrams(String) bigrams} of given
+ * values. A position gap is inserted between the values, therefore a phrase
+ * query never matches a substring spanning two values.
+ * @author Martin Vysny
+ */
+final class BigramTokenStream extends TokenStream {
+
+    private final List<String> bigrams = new ArrayList<String>();
+    /**
+     * Indices of the first bigrams of the second and following values.
+     */
+    private final List<Integer> gaps = new ArrayList<Integer>();
+    private final TermAttribute termAtt = addAttribute(TermAttribute.class);
+    private final PositionIncrementAttribute posAtt = addAttribute(PositionIncrementAttribute.class);
+    private int index = 0;
+
+    /**
+     * Creates the stream.
+     * @param values the values, null values are ignored.
+     */
+    BigramTokenStream(final String... values) {
+        for (final String value : values) {
+            if (value == null) {
+                continue;
+            }
+            if (!bigrams.isEmpty()) {
+                gaps.add(bigrams.size());
+            }
+            bigrams.addAll(QueryUtils.bigrams(value.toLowerCase()));
+        }
+    }
+
+    /**
+     * Creates a bigram field.
+     * @param name the field name.
+     * @param values the values, null values are ignored.
+     * @return a non-stored field.
+     */
+    static Field newField(final String name, final String... values) {
+        return new Field(name, new BigramTokenStream(values));
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (index >= bigrams.size()) {
+            return false;
+        }
+        clearAttributes();
+        termAtt.setTermBuffer(bigrams.get(index));
+        if (gaps.contains(index)) {
+            posAtt.setPositionIncrement(2);
+        }
+        index++;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+    }
+}
@@ -17,9 +17,11 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package sk.baka.aedict.indexer;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -30,9 +32,13 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexWriter;
 import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.dict.EdictEntry;
+import sk.baka.aedict.dict.HeadwordIndex;
 import sk.baka.aedict.dict.KanjidicEntry;
+import sk.baka.aedict.dict.QueryUtils;
+import sk.baka.aedict.dict.Ranking;
 import sk.baka.aedict.indexer.Main.Config;
 import sk.baka.aedict.kanji.KanjiUtils;
+import sk.baka.aedict.kanji.RomanizationEnum;
 import sk.baka.autils.ListBuilder;
 
 /**
@@ -61,30 +67,96 @@ public enum FileTypeEnum {
         public IDictParser newParser(Config cfg) {
             return new IDictParser() {
 
+                /**
+                 * The parsed entries. The documents are written in the
+                 * {@link Ranking rank} order when the parsing finishes, so
+                 * that the search returns the best entries first.
+                 */
+                private final List<EdictEntry> entries = new ArrayList<EdictEntry>();
+                private final List<String> lines = new ArrayList<String>();
+
                 public void addLine(String line, IndexWriter writer) throws IOException {
                     if (line.startsWith("　？？？")) {
                         return;
                     }
-                    final Document doc = new Document();
                     try {
-                        final EdictEntry entry = DictTypeEnum.parseEdictEntry(line);
-                        doc.add(new Field("contents", line, Field.Store.YES, Field.Index.ANALYZED));
+                        entries.add(DictTypeEnum.parseEdictEntry(line));
+                        lines.add(line);
+                    } catch (Exception ex) {
+                        System.out.println("Failed to parse edict line " + line + ", skipping: " + ex);
+                        ex.printStackTrace();
+                    }
+                }
+
+                public void onFinish(final IndexWriter writer) throws IOException {
+                    // the exact and prefix Japanese lookups are answered by
+                    // the headword index, without the Lucene index
+                    final HeadwordIndexWriter headwords = new HeadwordIndexWriter("headword", "headword-kana", "romaji");
+                    boolean first = true;
+                    for (final int i : Ranking.order(entries)) {
+                        final EdictEntry entry = entries.get(i);
+                        final Document doc = new Document();
+                        doc.add(new Field("contents", lines.get(i), Field.Store.YES, Field.Index.ANALYZED));
                         doc.add(new Field("common", entry.isCommon ? "t" : "f", Field.Store.NO, Field.Index.NOT_ANALYZED));
+                        if (first) {
+                            // a single indexed term marks the index as
+                            // ordered by rank, nothing is stored
+                            doc.add(new Field("rank", "t", Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+                            first = false;
+                        }
                         final ListBuilder jp = new ListBuilder(" ");
                         if (entry.kanji != null) {
                             jp.add("W" + entry.kanji + "W");
                         }
                         jp.add("W" + entry.reading + "W");
                         doc.add(new Field("jp", jp.toString(), Field.Store.NO, Field.Index.ANALYZED));
+                        // allows for an exact substring search
+                        doc.add(BigramTokenStream.newField("jp-bigram", entry.kanji, entry.reading));
+                        // whole kanji and reading values, allow for the exact,
+                        // prefix and suffix Japanese search
+                        addHeadword(doc, "headword", entry.kanji);
+                        addHeadword(doc, "headword", entry.reading);
+                        // the same with kana normalized to hiragana, matches
+                        // both kana variants of a romaji query at once
+                        final String kanji = entry.kanji == null ? null : KanjiUtils.normalizeKana(entry.kanji);
+                        final String reading = KanjiUtils.normalizeKana(entry.reading);
+                        doc.add(BigramTokenStream.newField("jp-kana-bigram", kanji, reading));
+                        addHeadword(doc, "headword-kana", kanji);
+                        addHeadword(doc, "headword-kana", reading);
+                        // canonical romaji of the kana values, allows for a
+                        // direct exact romaji lookup
+                        addRomajiKey(doc, entry.kanji);
+                        addRomajiKey(doc, entry.reading);
+                        // allows for a quick exact English search
+                        for (final String gloss : EdictEntry.getGlosses(entry.english)) {
+                            doc.add(new Field("gloss", gloss, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+                        }
                         writer.addDocument(doc);
-                    } catch (Exception ex) {
-                        System.out.println("Failed to parse edict line " + line + ", skipping: " + ex);
-                        ex.printStackTrace();
+                        headwords.add(entry, doc);
+                    }
+                    headwords.write(new File(Main.LUCENE_INDEX, HeadwordIndex.FILE_NAME));
+                    entries.clear();
+                    lines.clear();
+                }
+
+                private void addRomajiKey(final Document doc, final String kana) {
+                    if (kana == null) {
+                        return;
+                    }
+                    final String key = RomanizationEnum.kanaToRomajiKey(kana);
+                    // kanji cannot be romanized
+                    if (RomanizationEnum.isRomaji(key)) {
+                        doc.add(new Field("romaji", key, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
                     }
                 }
 
-                public void onFinish(final IndexWriter writer) {
-                    // do nothing
+                private void addHeadword(final Document doc, final String field, final String headword) {
+                    if (headword == null) {
+                        return;
+                    }
+                    final String value = headword.toLowerCase();
+                    doc.add(new Field(field, value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+                    doc.add(new Field(field + "-rev", QueryUtils.reverse(value), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
                 }
             };
         }
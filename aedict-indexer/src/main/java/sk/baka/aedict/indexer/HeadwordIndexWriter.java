@@ -0,0 +1,192 @@
+/**
+ *     Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import sk.baka.aedict.dict.EdictEntry;
+import sk.baka.aedict.dict.HeadwordIndex;
+
+/**
+ * Writes the {@link HeadwordIndex} file. The entries must be added in the
+ * order of the Lucene documents.
+ * @author Martin Vysny
+ */
+final class HeadwordIndexWriter {
+
+    /**
+     * The keyword fields copied to the headword index.
+     */
+    private final String[] fields;
+    private final List<EdictEntry> entries = new ArrayList<EdictEntry>();
+    /**
+     * The keys of each field.
+     */
+    private final List<List<Key>> keys = new ArrayList<List<Key>>();
+    /**
+     * Names of all fields of the Lucene documents.
+     */
+    private final Set<String> luceneFields = new TreeSet<String>();
+
+    /**
+     * Creates the writer.
+     * @param fields the keyword fields copied to the headword index.
+     */
+    HeadwordIndexWriter(final String... fields) {
+        this.fields = fields;
+        for (int i = 0; i < fields.length; i++) {
+            keys.add(new ArrayList<Key>());
+        }
+    }
+
+    /**
+     * A single value of a keyword field.
+     */
+    private static final class Key {
+
+        final byte[] value;
+        final int entry;
+
+        Key(byte[] value, int entry) {
+            this.value = value;
+            this.entry = entry;
+        }
+    }
+    /**
+     * Orders the keys by their unsigned bytes, then by the entry index.
+     */
+    private static final Comparator<Key> KEY_ORDER = new Comparator<Key>() {
+
+        public int compare(Key o1, Key o2) {
+            for (int i = 0; i < o1.value.length && i < o2.value.length; i++) {
+                final int c = (o1.value[i] & 0xFF) - (o2.value[i] & 0xFF);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            if (o1.value.length != o2.value.length) {
+                return o1.value.length - o2.value.length;
+            }
+            return o1.entry - o2.entry;
+        }
+    };
+
+    /**
+     * Adds an entry.
+     * @param entry the entry
+     * @param doc the Lucene document of the entry, the keyword field values are taken from here.
+     */
+    void add(final EdictEntry entry, final Document doc) throws IOException {
+        final int id = entries.size();
+        entries.add(entry);
+        for (final Object field : doc.getFields()) {
+            luceneFields.add(((Fieldable) field).name());
+        }
+        for (int i = 0; i < fields.length; i++) {
+            for (final String value : doc.getValues(fields[i])) {
+                keys.get(i).add(new Key(value.getBytes("UTF-8"), id));
+            }
+        }
+    }
+
+    /**
+     * Writes the headword index.
+     * @param file the target file
+     * @throws IOException on i/o error
+     */
+    void write(final File file) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(HeadwordIndex.MAGIC);
+            out.writeInt(HeadwordIndex.VERSION);
+            // the queries are built for the fields of the Lucene index
+            out.writeInt(luceneFields.size());
+            for (final String field : luceneFields) {
+                writeString(out, field);
+            }
+            out.writeInt(entries.size());
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream data = new DataOutputStream(bytes);
+            for (final EdictEntry entry : entries) {
+                out.writeInt(data.size());
+                data.writeByte((entry.kanji != null ? HeadwordIndex.FLAG_KANJI : 0) | (entry.isCommon ? HeadwordIndex.FLAG_COMMON : 0));
+                if (entry.kanji != null) {
+                    writeString(data, entry.kanji);
+                }
+                writeString(data, entry.reading);
+                writeString(data, entry.english);
+            }
+            out.writeInt(data.size());
+            bytes.writeTo(out);
+            out.writeInt(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                writeString(out, fields[i]);
+                writeSection(out, keys.get(i));
+            }
+            // flushes the buffer, a failure must not be swallowed
+            out.close();
+        } finally {
+            // does nothing if the stream is already closed
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static void writeSection(final DataOutputStream out, final List<Key> keys) throws IOException {
+        Collections.sort(keys, KEY_ORDER);
+        // a value may occur multiple times in a single document, e.g. the
+        // kana-normalized kanji and reading
+        final List<Key> unique = new ArrayList<Key>(keys.size());
+        for (final Key key : keys) {
+            if (unique.isEmpty() || KEY_ORDER.compare(unique.get(unique.size() - 1), key) != 0) {
+                unique.add(key);
+            }
+        }
+        out.writeInt(unique.size());
+        int offset = 0;
+        for (final Key key : unique) {
+            out.writeInt(offset);
+            offset += key.value.length;
+        }
+        out.writeInt(offset);
+        for (final Key key : unique) {
+            out.writeInt(key.entry);
+        }
+        for (final Key key : unique) {
+            out.write(key.value);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] b = value.getBytes("UTF-8");
+        out.writeInt(b.length);
+        out.write(b);
+    }
+}
@@ -184,7 +184,17 @@ public class Main {
         return opts;
     }
 
-    Main(final String[] args) throws MalformedURLException, ParseException {
+    /**
+     * Parses the command line. Use {@link #run()} to perform the tasks.
+     *
+     * @param args
+     *            the command line arguments, as accepted by {@link #main(String[])}.
+     * @throws MalformedURLException
+     *             if the dictionary URL is malformed.
+     * @throws ParseException
+     *             if the command line is invalid.
+     */
+    public Main(final String[] args) throws MalformedURLException, ParseException {
         final CommandLineParser parser = new GnuParser();
         final CommandLine cl = parser.parse(getOptions(), args);
         if (cl.hasOption('?')) {
@@ -231,7 +241,15 @@ public class Main {
         f.printHelp("ai", "Aedict index file generator\nProduces a Lucene-indexed file from given dictionary file (expects Jim Breen's Edict by default). To download and index the default english-japan edict file just use the -d switch - the file is downloaded automatically.", getOptions(), null, true);
     }
 
-    void run() throws Exception {
+    /**
+     * Performs the tasks given on the command line. Unlike
+     * {@link #main(String[])}, a failure is thrown instead of terminating the
+     * JVM.
+     *
+     * @throws Exception
+     *             if a task fails.
+     */
+    public void run() throws Exception {
         final StringBuilder sb = new StringBuilder();
         sb.append("Indexing ");
         if (config.isGzipped) {
@@ -233,6 +233,8 @@ public class TanakaParser implements IDictParser {
             final String japanese = (String) parsed.get(0);
             final String english = (String) parsed.get(1);
             doc.add(new Field("japanese", japanese, Field.Store.YES, Field.Index.ANALYZED));
+            doc.add(BigramTokenStream.newField("japanese-bigram", japanese));
+            doc.add(BigramTokenStream.newField("japanese-kana-bigram", KanjiUtils.normalizeKana(japanese)));
             doc.add(new Field("english", english, Field.Store.YES, Field.Index.ANALYZED));
             return;
         }
@@ -18,10 +18,11 @@ import org.apache.lucene.document.CompressionTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexWriter;
+import sk.baka.aedict.dict.DictTypeEnum;
 import sk.baka.aedict.indexer.Main.Config;
 import sk.baka.aedict.indexer.TanakaParser.BLineParser;
 import sk.baka.aedict.indexer.TanakaParser.Edict;
-import sk.baka.autils.ListBuilder;
+import sk.baka.aedict.kanji.KanjiUtils;
 import sk.baka.autils.MiscUtils;
 
 /**
@@ -105,7 +106,13 @@ public class TatoebaParser implements IDictParser {
                 languages.addAll(e.getValue().sentences.keySet());
                 final Document doc = new Document();
                 doc.add(new Field("japanese", e.getValue().japanese, Field.Store.YES, Field.Index.ANALYZED));
-                doc.add(new Field("translations", e.getValue().getSentences(), Field.Store.YES, Field.Index.ANALYZED));
+                doc.add(BigramTokenStream.newField("japanese-bigram", e.getValue().japanese));
+                doc.add(BigramTokenStream.newField("japanese-kana-bigram", KanjiUtils.normalizeKana(e.getValue().japanese)));
+                // store every translation in its own field so that search loads only the requested language
+                for (final Entry<String, String> t : e.getValue().sentences.entrySet()) {
+                    doc.add(new Field(DictTypeEnum.getTranslationField(t.getKey()), t.getValue(), Field.Store.YES, Field.Index.ANALYZED));
+                    doc.add(new Field("langs", t.getKey(), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+                }
                 doc.add(new Field("jp-deinflected", e.getValue().bLine.dictionaryFormWordList, Field.Store.YES, Field.Index.ANALYZED));
                 doc.add(new Field("kana", CompressionTools.compressString(e.getValue().bLine.kana), Field.Store.YES));
                 writer.addDocument(doc);
@@ -267,14 +274,6 @@ public class TatoebaParser implements IDictParser {
         public String getEngSentence() {
             return sentences.get("eng");
         }
-
-        public String getSentences() {
-            final ListBuilder lb = new ListBuilder("\n");
-            for (final Entry<String, String> e : sentences.entrySet()) {
-                lb.add(e.getKey() + ": " + e.getValue());
-            }
-            return lb.toString();
-        }
     }
 
     public TatoebaParser(Config cfg) throws IOException {
@@ -0,0 +1,144 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.CancelToken;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.FederatedSearch;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.dict.SearchResult;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the cancellable and time-limited search of the {@link LuceneSearch}
+ * class.
+ * @author Martin Vysny
+ */
+public class AsyncSearchTest {
+
+    private static final SearchQuery QUERY = SearchQuery.searchJpEdict("はは", MatcherEnum.Substring);
+    private LuceneSearch search;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Before
+    public void open() throws Exception {
+        search = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        executor = FederatedSearch.newExecutor(1);
+    }
+
+    @After
+    public void close() throws Exception {
+        executor.shutdownNow();
+        search.close();
+    }
+
+    @Test
+    public void asyncSearchReturnsSameEntriesAsSearch() throws Exception {
+        final List<String> expected = toExternal(search.search(QUERY, 1000));
+        assertFalse(expected.isEmpty());
+        final SearchResult result = search.searchAsync(QUERY, 1000, new CancelToken(), 1, TimeUnit.MINUTES, executor).get();
+        assertFalse(result.truncated);
+        assertEquals(expected, toExternal(result.entries));
+        assertFalse(search.search(QUERY, 1000, null, 0, TimeUnit.MILLISECONDS).truncated);
+    }
+
+    @Test
+    public void cancelledSearchReturnsPartialResult() throws Exception {
+        final List<String> all = toExternal(search.search(QUERY, 1000));
+        final CancelToken cancelled = new CancelToken();
+        cancelled.cancel();
+        SearchResult result = search.search(QUERY, 1000, cancelled, 0, TimeUnit.MILLISECONDS);
+        assertTrue(result.truncated);
+        assertTrue(result.entries.isEmpty());
+        // cancel the search in the middle
+        result = search.search(QUERY, 1000, new CancelToken() {
+
+            private int polls = 0;
+
+            @Override
+            public boolean isCancelled() {
+                return ++polls > 3;
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(result.truncated);
+        assertFalse(result.entries.isEmpty());
+        assertTrue(result.entries.size() < all.size());
+        assertTrue(all.containsAll(toExternal(result.entries)));
+    }
+
+    @Test
+    public void expiredDeadlineTruncatesResult() throws Exception {
+        final SearchResult result = search.search(QUERY, 1000, null, 1, TimeUnit.NANOSECONDS);
+        assertTrue(result.truncated);
+        assertTrue(result.entries.isEmpty());
+    }
+
+    @Test
+    public void cancellingFutureCancelsToken() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        // occupy the only thread
+        executor.execute(new Runnable() {
+
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    // finish
+                }
+            }
+        });
+        final CancelToken token = new CancelToken();
+        final Future<SearchResult> future = search.searchAsync(QUERY, 1000, token, 0, TimeUnit.MILLISECONDS, executor);
+        assertTrue(future.cancel(true));
+        assertTrue(token.isCancelled());
+        latch.countDown();
+        try {
+            future.get();
+            fail("The future is cancelled");
+        } catch (CancellationException ex) {
+            // okay
+        }
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>(entries.size());
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.FederatedSearch;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link FederatedSearch} class.
+ * @author Martin Vysny
+ */
+public class FederatedSearchTest {
+
+    private static final Dictionary DEFAULT = new Dictionary(DictTypeEnum.Edict, null);
+    private static final Dictionary CUSTOM = new Dictionary(DictTypeEnum.Edict, "custom");
+    private LuceneSearchRegistry registry;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Before
+    public void createRegistry() {
+        registry = Utils.newRegistry();
+        executor = FederatedSearch.newExecutor(2);
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        executor.shutdownNow();
+        registry.closeIdle(true);
+    }
+
+    @Test
+    public void resultsAreTaggedAndMerged() throws Exception {
+        final SearchQuery q = SearchQuery.searchJpEdict("はは", MatcherEnum.Substring);
+        final List<DictEntry> single;
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            single = s.search(q, 100);
+        } finally {
+            s.close();
+        }
+        final List<FederatedSearch.Hit> result = new FederatedSearch(registry, executor, 10000).search(q, Arrays.asList(DEFAULT, CUSTOM), 100);
+        assertEquals(single.size() * 2, result.size());
+        final List<String> fromDefault = new ArrayList<String>();
+        final List<String> fromCustom = new ArrayList<String>();
+        for (int i = 0; i < result.size(); i++) {
+            final FederatedSearch.Hit hit = result.get(i);
+            assertTrue(hit.entry.isValid());
+            if (i > 0) {
+                assertTrue(result.get(i - 1).entry.compareTo(hit.entry) <= 0);
+            }
+            (hit.dictionary.equals(DEFAULT) ? fromDefault : fromCustom).add(hit.entry.toExternal());
+        }
+        assertEquals(fromDefault, fromCustom);
+        assertEquals(single.size(), fromDefault.size());
+    }
+
+    @Test
+    public void timedOutDictionaryIsReportedAsError() throws Exception {
+        final ExecutorService singleThread = FederatedSearch.newExecutor(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            // occupy the only thread
+            singleThread.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ex) {
+                        // finish
+                    }
+                }
+            });
+            final List<FederatedSearch.Hit> result = new FederatedSearch(registry, singleThread, 100).search(SearchQuery.searchEnEdict("mother", false), Arrays.asList(DEFAULT, CUSTOM), 100);
+            assertEquals(2, result.size());
+            for (final FederatedSearch.Hit hit : result) {
+                assertFalse(hit.entry.isValid());
+                assertTrue(hit.entry.english, hit.entry.english.contains("timed out"));
+            }
+        } finally {
+            latch.countDown();
+            singleThread.shutdownNow();
+        }
+    }
+
+    /**
+     * A search which runs out of time is terminated by its token, without
+     * interrupting the thread; the shared index stays usable.
+     */
+    @Test
+    public void timeoutDoesNotInterruptSearch() throws Exception {
+        final ExecutorService singleThread = FederatedSearch.newExecutor(1);
+        final boolean[] interrupted = new boolean[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            singleThread.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ex) {
+                        interrupted[0] = true;
+                    }
+                }
+            });
+            final List<FederatedSearch.Hit> result = new FederatedSearch(registry, singleThread, 100).search(SearchQuery.searchEnEdict("mother", false), Arrays.asList(DEFAULT), 100);
+            assertEquals(1, result.size());
+            assertFalse(result.get(0).entry.isValid());
+            latch.countDown();
+            // the timed out search was not started at all
+            singleThread.shutdown();
+            assertTrue(singleThread.awaitTermination(10, TimeUnit.SECONDS));
+            assertFalse(interrupted[0]);
+            final LuceneSearch s = registry.open(DEFAULT, false);
+            try {
+                assertFalse(s.search(SearchQuery.searchEnEdict("mother", false)).isEmpty());
+            } finally {
+                s.close();
+            }
+        } finally {
+            latch.countDown();
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dictionaryTypeMustMatchQuery() {
+        new FederatedSearch(registry, executor, 1000).search(SearchQuery.searchEnEdict("mother", false), Arrays.asList(new Dictionary(DictTypeEnum.Tanaka, null)), 100);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.HeadwordIndex;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link HeadwordIndex} class.
+ * @author Martin Vysny
+ */
+public class HeadwordIndexTest {
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    /**
+     * The headword index returns exactly the same entries as the Lucene
+     * search, in the same order.
+     */
+    @Test
+    public void headwordIndexEqualsLuceneSearch() throws Exception {
+        final HeadwordIndex h = HeadwordIndex.open(new File(Main.LUCENE_INDEX));
+        assertNotNull(h);
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final List<SearchQuery> queries = new ArrayList<SearchQuery>();
+            for (final MatcherEnum matcher : new MatcherEnum[]{MatcherEnum.Exact, MatcherEnum.StartsWith}) {
+                for (final String word : new String[]{"はは", "母", "う", "きょう", "今日", "ＣＤ", "ははおや", "ハハ", "ははおや AND はは", "ぬぬぬ"}) {
+                    queries.add(SearchQuery.searchJpEdict(word, matcher));
+                }
+                for (final String word : new String[]{"haha", "kyou", "shinbun", "shimbun", "aagairu", "kan'i", "oya AND haha", "a", "ka", "shi AND shin"}) {
+                    queries.add(SearchQuery.searchJpRomaji(word, RomanizationEnum.Hepburn, matcher));
+                }
+            }
+            int found = 0;
+            for (final SearchQuery q : queries) {
+                for (final int maxResults : new int[]{1, 5, 37, 100000}) {
+                    final List<DictEntry> result = h.search(q, maxResults);
+                    assertNotNull(q.toString(), result);
+                    final List<String> expected = toExternal(s.search(q, maxResults));
+                    assertEquals(q + " " + maxResults, expected, toExternal(result));
+                    found += expected.size();
+                }
+            }
+            assertTrue(found > 0);
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void unsupportedQueriesAreRejected() throws Exception {
+        final HeadwordIndex h = HeadwordIndex.open(new File(Main.LUCENE_INDEX));
+        assertNull(h.search(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring), 100));
+        assertNull(h.search(SearchQuery.searchJpEdict("はは", MatcherEnum.EndsWith), 100));
+        assertNull(h.search(SearchQuery.searchEnEdict("mother", true), 100));
+        assertFalse(h.isSupported(SearchQuery.searchEnEdict("mother", true)));
+        assertTrue(h.isSupported(SearchQuery.searchJpEdict("はは", MatcherEnum.StartsWith)));
+    }
+
+    @Test
+    public void entriesAreStoredInDocumentOrder() throws Exception {
+        final HeadwordIndex h = HeadwordIndex.open(new File(Main.LUCENE_INDEX));
+        final IndexReader reader = IndexReader.open(FSDirectory.open(new File(Main.LUCENE_INDEX)), true);
+        try {
+            assertEquals(reader.maxDoc(), h.size());
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                final DictEntry e = DictTypeEnum.Edict.getEntry(reader.document(i), null);
+                assertEquals(e.toExternal(), h.getEntry(i).toExternal());
+                assertEquals(e.isCommon, h.getEntry(i).isCommon);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void fieldsOfLuceneIndexAreStored() throws Exception {
+        final HeadwordIndex h = HeadwordIndex.open(new File(Main.LUCENE_INDEX));
+        final IndexReader reader = IndexReader.open(FSDirectory.open(new File(Main.LUCENE_INDEX)), true);
+        try {
+            assertEquals(new HashSet<String>(reader.getFieldNames(IndexReader.FieldOption.ALL)), h.getFields());
+            assertTrue(h.getFields().contains("rank"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void missingHeadwordIndex() throws Exception {
+        assertNull(HeadwordIndex.open(new File("target")));
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>(entries.size());
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.FederatedSearch;
+import sk.baka.aedict.dict.IncrementalSearch;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link IncrementalSearch} class.
+ * @author Martin Vysny
+ */
+public class IncrementalSearchTest {
+
+    private static final Dictionary DICT = new Dictionary(DictTypeEnum.Edict, null);
+    private LuceneSearchRegistry registry;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Before
+    public void createRegistry() {
+        registry = Utils.newRegistry();
+        // test the session itself, not the result cache
+        registry.getResultCache().setLimits(0, 0);
+        executor = FederatedSearch.newExecutor(1);
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        executor.shutdownNow();
+        registry.closeIdle(true);
+    }
+
+    @Test
+    public void refinedQueryIsFilteredInMemory() throws Exception {
+        final IncrementalSearch session = new IncrementalSearch(registry, DICT, true, 1000, 1000, null);
+        for (final MatcherEnum matcher : new MatcherEnum[]{MatcherEnum.StartsWith, MatcherEnum.Substring}) {
+            session.reset();
+            final int searches = session.getIndexSearchCount();
+            final int refined = session.getRefinedCount();
+            for (final String q : new String[]{"はは", "ははお", "ははおや"}) {
+                assertSameResult(session, SearchQuery.searchJpEdict(q, matcher), 1000);
+            }
+            assertEquals(searches + 1, session.getIndexSearchCount());
+            assertEquals(refined + 2, session.getRefinedCount());
+        }
+        // a shorter query is not a refinement
+        assertSameResult(session, SearchQuery.searchJpEdict("はは", MatcherEnum.Substring), 1000);
+        assertEquals(3, session.getIndexSearchCount());
+        // neither is a different matcher
+        assertSameResult(session, SearchQuery.searchJpEdict("ははお", MatcherEnum.StartsWith), 1000);
+        assertEquals(4, session.getIndexSearchCount());
+    }
+
+    @Test
+    public void refinedRomajiQueryMatchesNormalizedKana() throws Exception {
+        // "suu" matches the long vowel mark of スーパー in the kana-normalized
+        // fields only
+        final IncrementalSearch session = new IncrementalSearch(registry, DICT, true, 10000, 10000, null);
+        for (final MatcherEnum matcher : new MatcherEnum[]{MatcherEnum.StartsWith, MatcherEnum.Substring}) {
+            session.reset();
+            final int searches = session.getIndexSearchCount();
+            for (final String q : new String[]{"suu", "suupa", "suupaa"}) {
+                assertSameResult(session, SearchQuery.searchJpRomaji(q, RomanizationEnum.Hepburn, matcher), 10000);
+            }
+            assertEquals(searches + 1, session.getIndexSearchCount());
+        }
+        // the same query is served from the candidates
+        final int refined = session.getRefinedCount();
+        assertSameResult(session, SearchQuery.searchJpRomaji("suupaa", RomanizationEnum.Hepburn, MatcherEnum.Substring), 10000);
+        assertEquals(refined + 1, session.getRefinedCount());
+    }
+
+    @Test
+    public void candidatesArePrefetched() throws Exception {
+        final IncrementalSearch session = new IncrementalSearch(registry, DICT, true, 5, 10000, executor);
+        assertSameResult(session, SearchQuery.searchJpEdict("は", MatcherEnum.StartsWith), 5);
+        for (int i = 0; i < 500 && !session.isPrefetched(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(session.isPrefetched());
+        assertSameResult(session, SearchQuery.searchJpEdict("はは", MatcherEnum.StartsWith), 5);
+        assertSameResult(session, SearchQuery.searchJpEdict("ははお", MatcherEnum.StartsWith), 5);
+        assertEquals(1, session.getIndexSearchCount());
+        assertEquals(2, session.getRefinedCount());
+    }
+
+    private void assertSameResult(final IncrementalSearch session, final SearchQuery q, final int maxResults) throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        try {
+            final List<String> expected = toExternal(s.search(q, maxResults));
+            assertFalse(q.prettyPrintQuery(), expected.isEmpty());
+            assertEquals(q.prettyPrintQuery(), expected, toExternal(session.search(q)));
+        } finally {
+            s.close();
+        }
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>(entries.size());
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+import static org.junit.Assert.*;
+
+/**
+ * Stress-tests a single {@link LuceneSearch} instance shared by multiple threads.
+ * @author Martin Vysny
+ */
+public class LuceneSearchConcurrencyTest {
+
+    private static final int ROUNDS = 20;
+    private static LuceneSearch search;
+    private static List<SearchQuery> queries;
+    private static List<List<DictEntry>> expected;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+        search = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        queries = new ArrayList<SearchQuery>();
+        for (final String en : new String[]{"mother", "father", "today", "go", "pretty"}) {
+            queries.add(SearchQuery.searchEnEdict(en, true));
+            queries.add(SearchQuery.searchEnEdict(en, false));
+        }
+        for (final MatcherEnum m : MatcherEnum.values()) {
+            queries.add(SearchQuery.searchJpEdict("はは", m));
+            queries.add(SearchQuery.searchJpEdict("母", m));
+            queries.add(SearchQuery.searchJpRomaji("kyou", RomanizationEnum.Hepburn, m));
+        }
+        // compute the expected results in a single thread
+        expected = new ArrayList<List<DictEntry>>();
+        for (final SearchQuery q : queries) {
+            expected.add(search.search(q));
+        }
+    }
+
+    @AfterClass
+    public static void closeSearch() throws Exception {
+        search.close();
+    }
+
+    /**
+     * The throughput scaling is measured by the ConcurrentSearchBenchmark of
+     * the aedict-benchmarks module.
+     */
+    @Test
+    public void concurrentSearchReturnsSameResults() throws Exception {
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        for (int t = 1; t <= threads; t *= 2) {
+            run(t);
+        }
+    }
+
+    private void run(final int threads) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++) {
+                final int offset = i;
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    public Void call() throws Exception {
+                        for (int round = 0; round < ROUNDS; round++) {
+                            for (int j = 0; j < queries.size(); j++) {
+                                // threads walk the queries in a different order
+                                final int index = (j + offset) % queries.size();
+                                assertEquals(queries.get(index).prettyPrintQuery(), expected.get(index), search.search(queries.get(index)));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> f : futures) {
+                // rethrows assertion failures
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.Arrays;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.DictionaryVersions;
+import sk.baka.aedict.dict.DirectoryModeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.SearchQuery;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LuceneSearchRegistry} class.
+ * @author Martin Vysny
+ */
+public class LuceneSearchRegistryTest {
+
+    private static final Dictionary EDICT = new Dictionary(DictTypeEnum.Edict, null);
+    private LuceneSearchRegistry registry;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Before
+    public void createRegistry() {
+        registry = Utils.newRegistry();
+    }
+
+    @Test
+    public void indexIsReused() throws Exception {
+        LuceneSearch s = registry.open(EDICT, false);
+        assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        s.close();
+        s = registry.open(EDICT, false);
+        assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        s.close();
+        assertEquals(1, registry.getOpenCount());
+        assertEquals(1, registry.getMissCount());
+        assertEquals(1, registry.getHitCount());
+        assertTrue(registry.isOpened(EDICT));
+    }
+
+    @Test
+    public void multipleLeases() throws Exception {
+        final LuceneSearch s1 = registry.open(EDICT, false);
+        final LuceneSearch s2 = registry.open(EDICT, false);
+        s1.close();
+        // closing twice must not release the index twice
+        s1.close();
+        assertFalse(s2.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        s2.close();
+        assertEquals(1, registry.getOpenCount());
+    }
+
+    @Test
+    public void idleIndexIsClosed() throws Exception {
+        registry.open(EDICT, false).close();
+        registry.closeIdle(false);
+        assertTrue(registry.isOpened(EDICT));
+        registry.setIdleTimeout(0);
+        registry.closeIdle(false);
+        assertFalse(registry.isOpened(EDICT));
+        registry.open(EDICT, false).close();
+        assertEquals(2, registry.getOpenCount());
+        assertEquals(2, registry.getMissCount());
+    }
+
+    @Test
+    public void idleIndexIsClosedInBackground() throws Exception {
+        registry.setIdleTimeout(100);
+        for (int i = 0; i < 50; i++) {
+            registry.open(EDICT, false).close();
+        }
+        assertTrue(registry.isOpened(EDICT));
+        for (int i = 0; i < 100 && registry.isOpened(EDICT); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(registry.isOpened(EDICT));
+        registry.closeIdle(false);
+    }
+
+    @Test
+    public void concurrentOpensShareOneIndex() throws Exception {
+        final int threads = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<LuceneSearch>> leases = new ArrayList<Future<LuceneSearch>>();
+            for (int i = 0; i < threads; i++) {
+                leases.add(executor.submit(new Callable<LuceneSearch>() {
+
+                    public LuceneSearch call() throws Exception {
+                        barrier.await();
+                        return registry.open(EDICT, false);
+                    }
+                }));
+            }
+            for (final Future<LuceneSearch> lease : leases) {
+                final LuceneSearch s = lease.get();
+                assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+                s.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads, registry.getHitCount() + registry.getMissCount());
+        assertTrue(registry.isOpened(EDICT));
+        // the indices opened by the threads which lost the race are closed
+        registry.closeIdle(true);
+        assertFalse(registry.isOpened(EDICT));
+    }
+
+    @Test
+    public void leasedIndexIsNotClosed() throws Exception {
+        final LuceneSearch s = registry.open(EDICT, false);
+        registry.closeIdle(true);
+        assertTrue(registry.isOpened(EDICT));
+        assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        s.close();
+        registry.closeIdle(true);
+        assertFalse(registry.isOpened(EDICT));
+    }
+
+    @Test
+    public void invalidatedIndexIsClosedAfterRelease() throws Exception {
+        final LuceneSearch s = registry.open(EDICT, false);
+        registry.invalidate(EDICT);
+        assertFalse(registry.isOpened(EDICT));
+        // the lease must still be usable
+        assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        s.close();
+        registry.open(EDICT, false).close();
+        assertEquals(2, registry.getOpenCount());
+    }
+
+    @Test
+    public void allDirectoryModesReturnSameResults() throws Exception {
+        final SearchQuery q = SearchQuery.searchEnEdict("mother", false);
+        LuceneSearch s = registry.open(EDICT, false);
+        final List<DictEntry> expected = s.search(q);
+        s.close();
+        assertFalse(expected.isEmpty());
+        for (final DirectoryModeEnum mode : DirectoryModeEnum.values()) {
+            registry.setDirectoryMode(EDICT, mode);
+            assertEquals(mode, registry.getDirectoryMode(EDICT));
+            s = registry.open(EDICT, false);
+            assertEquals(expected, s.search(q));
+            s.close();
+        }
+    }
+
+    @Test
+    public void changingDirectoryModeReopensIndex() throws Exception {
+        registry.setDirectoryMode(EDICT, DirectoryModeEnum.Default);
+        registry.open(EDICT, false).close();
+        registry.setDirectoryMode(EDICT, DirectoryModeEnum.Default);
+        assertTrue(registry.isOpened(EDICT));
+        registry.setDirectoryMode(EDICT, DirectoryModeEnum.Ram);
+        assertFalse(registry.isOpened(EDICT));
+        registry.open(EDICT, false).close();
+        assertEquals(2, registry.getOpenCount());
+    }
+
+    @Test
+    public void directoryModeIsChosenByMemoryBudget() {
+        final long size = DirectoryModeEnum.getIndexSize(new File(Main.LUCENE_INDEX));
+        assertTrue(size > 0);
+        registry.setMemoryBudget(size);
+        assertEquals(DirectoryModeEnum.Ram, registry.getDirectoryMode(EDICT));
+        registry.setMemoryBudget(size - 1);
+        assertEquals(DirectoryModeEnum.MMap, registry.getDirectoryMode(EDICT));
+    }
+
+    @Test
+    public void memoryBudgetIsSharedByAllIndices() throws Exception {
+        final long size = DirectoryModeEnum.getIndexSize(new File(Main.LUCENE_INDEX));
+        final Dictionary custom = new Dictionary(DictTypeEnum.Edict, "custom");
+        registry.setMemoryBudget(size * 3 / 2);
+        final LuceneSearch s1 = registry.open(EDICT, false);
+        assertEquals(DirectoryModeEnum.Ram, registry.getDirectoryMode(EDICT));
+        assertEquals(size, registry.getHeapUsage());
+        // the budget is used up by the first index
+        assertEquals(DirectoryModeEnum.MMap, registry.getDirectoryMode(custom));
+        final LuceneSearch s2 = registry.open(custom, false);
+        assertEquals(DirectoryModeEnum.MMap, registry.getDirectoryMode(custom));
+        assertEquals(size, registry.getHeapUsage());
+        s1.close();
+        s2.close();
+        registry.closeIdle(true);
+        assertEquals(0, registry.getHeapUsage());
+        assertEquals(DirectoryModeEnum.Ram, registry.getDirectoryMode(custom));
+    }
+
+    @Test
+    public void resultsAreCached() throws Exception {
+        final SearchQuery q = SearchQuery.searchEnEdict("mother", true);
+        final LuceneSearch s = registry.open(EDICT, false);
+        final List<DictEntry> r1 = s.search(q);
+        final List<DictEntry> r2 = s.search(new SearchQuery(q));
+        assertEquals(r1, r2);
+        assertEquals(1, registry.getResultCache().getHitCount());
+        // the batch search uses the cache as well
+        final List<List<DictEntry>> batch = s.searchBatch(Arrays.asList(q, SearchQuery.searchEnEdict("nonexistingword", true)), 100);
+        assertEquals(r1, batch.get(0));
+        assertTrue(batch.get(1).isEmpty());
+        assertEquals(2, registry.getResultCache().getHitCount());
+        assertTrue(s.search(SearchQuery.searchEnEdict("nonexistingword", true)).isEmpty());
+        assertEquals(1, registry.getResultCache().getEmptyHitCount());
+        s.close();
+    }
+
+    @Test
+    public void warmFillsResultCache() throws Exception {
+        assertTrue(registry.warm(EDICT, false, false) >= 0);
+        assertTrue(registry.isOpened(EDICT));
+        assertEquals(0, registry.getResultCache().size());
+        registry.warm(EDICT, false, true);
+        assertTrue(registry.getResultCache().size() > 0);
+        final LuceneSearch s = registry.open(EDICT, false);
+        s.search(SearchQuery.searchEnEdict("mother", true));
+        s.close();
+        assertEquals(1, registry.getResultCache().getHitCount());
+    }
+
+    @Test
+    public void cacheIsClearedOnNewVersion() throws Exception {
+        final DictionaryVersions dv = new DictionaryVersions();
+        dv.versions.put(EDICT, "20100101");
+        registry.updateVersions(dv);
+        LuceneSearch s = registry.open(EDICT, false);
+        s.search(SearchQuery.searchEnEdict("mother", true));
+        s.close();
+        registry.updateVersions(dv);
+        assertEquals(1, registry.getResultCache().size());
+        dv.versions.put(EDICT, "20100102");
+        registry.updateVersions(dv);
+        assertEquals(0, registry.getResultCache().size());
+        assertFalse(registry.isOpened(EDICT));
+    }
+
+    @Test
+    public void resultOfInvalidatedIndexIsNotCached() throws Exception {
+        final LuceneSearch s = registry.open(EDICT, false);
+        registry.invalidate(EDICT);
+        assertFalse(s.search(SearchQuery.searchEnEdict("mother", true)).isEmpty());
+        assertEquals(0, registry.getResultCache().size());
+        s.close();
+    }
+}
@@ -17,11 +17,29 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package sk.baka.aedict.indexer;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.cli.ParseException;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.FSDirectory;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchCursor;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.KanjiUtils;
+import sk.baka.aedict.kanji.RomanizationEnum;
 import static org.junit.Assert.*;
 
 /**
@@ -67,6 +85,260 @@ public class MainTest extends AbstractLuceneSearchTest {
         assertEquals(2444, result.size());
     }
 
+    /**
+     * The gloss field must return exactly the same entries as the old
+     * filtering approach.
+     */
+    @Test
+    public void exactEnglishSearchUsesGlosses() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final String query : new String[]{"mother", "to go", "today", "one", "mother AND mom"}) {
+                final SearchQuery q = SearchQuery.searchEnEdict(query, true);
+                final List<String> expected = new ArrayList<String>();
+                for (final String line : search(null, "\"" + query.replace(" AND ", "\" AND \"") + "\"")) {
+                    final Document doc = new Document();
+                    doc.add(new Field("contents", line, Field.Store.YES, Field.Index.ANALYZED));
+                    final DictEntry entry = DictTypeEnum.Edict.tryGetEntry(doc, q);
+                    if (entry != null) {
+                        expected.add(entry.toExternal());
+                    }
+                }
+                final List<String> result = new ArrayList<String>();
+                for (final DictEntry entry : s.search(q, 10000)) {
+                    result.add(entry.toExternal());
+                }
+                Collections.sort(expected);
+                Collections.sort(result);
+                assertEquals(query, expected, result);
+                assertFalse(query, result.isEmpty());
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * The search must stop after maxResults entries are found, preferring the
+     * common entries.
+     */
+    @Test
+    public void searchTerminatesEarly() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final SearchQuery q = SearchQuery.searchJpEdict("う", MatcherEnum.Substring);
+            final List<DictEntry> all = s.search(q, 100000);
+            final List<DictEntry> first = s.search(q, 10);
+            assertEquals(10, first.size());
+            assertEquals(all.subList(0, 10), first);
+            final SearchCursor c = s.searchCursor(q);
+            assertEquals(first, c.next(10));
+            c.close();
+            for (final DictEntry e : first) {
+                assertTrue(e.isCommon);
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void batchSearchEqualsSingleSearches() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final List<SearchQuery> queries = new ArrayList<SearchQuery>();
+            queries.add(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring));
+            queries.add(SearchQuery.searchJpEdict("母", MatcherEnum.StartsWith));
+            queries.add(SearchQuery.searchJpEdict("う", MatcherEnum.Substring));
+            queries.add(SearchQuery.searchEnEdict("mother", true));
+            queries.add(SearchQuery.searchEnEdict("mother", false));
+            queries.add(SearchQuery.searchEnEdict("nonexistingword", true));
+            for (final int maxResults : new int[]{1, 10, 100000}) {
+                final List<List<DictEntry>> batch = s.searchBatch(queries, maxResults);
+                assertEquals(queries.size(), batch.size());
+                for (int i = 0; i < queries.size(); i++) {
+                    assertEquals(queries.get(i).prettyPrintQuery() + " " + maxResults, s.search(queries.get(i), maxResults), batch.get(i));
+                }
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * The documents are indexed in the rank order, therefore the results come
+     * sorted from a single Lucene query.
+     */
+    @Test
+    public void rankedIndexReturnsSortedResults() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final SearchQuery q : new SearchQuery[]{SearchQuery.searchJpEdict("う", MatcherEnum.Substring), SearchQuery.searchEnEdict("mother", false), SearchQuery.searchEnEdict("mother", true)}) {
+                assertEquals(1, DictTypeEnum.Edict.getLuceneQuery(q, Collections.singleton("rank")).length);
+                final List<DictEntry> result = s.search(q, 100000);
+                assertFalse(result.isEmpty());
+                final List<DictEntry> sorted = new ArrayList<DictEntry>(result);
+                Collections.sort(sorted);
+                assertEquals(q.prettyPrintQuery(), sorted, result);
+                assertEquals(sorted.subList(0, 5), s.searchTop(q, 100000, 5));
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * The rank order is marked by a single indexed term, no rank is stored
+     * per document.
+     */
+    @Test
+    public void rankMarkerIsNotStored() throws Exception {
+        final IndexReader reader = IndexReader.open(FSDirectory.open(new File(Main.LUCENE_INDEX)), true);
+        try {
+            assertTrue(reader.getFieldNames(IndexReader.FieldOption.ALL).contains("rank"));
+            assertEquals(1, reader.docFreq(new Term("rank", "t")));
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                assertNull(reader.document(i).get("rank"));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The keyword headword fields must match all entries found by the
+     * filtered search over the analyzed jp field. They match more entries
+     * where the analyzer fails to split the W markers off (e.g. the fullwidth
+     * latin letters); all of them must pass the matcher.
+     */
+    @Test
+    public void headwordSearchEqualsFilteredSearch() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final MatcherEnum matcher : new MatcherEnum[]{MatcherEnum.Exact, MatcherEnum.StartsWith, MatcherEnum.EndsWith}) {
+                for (final String word : new String[]{"はは", "母", "う", "きょう", "ＣＤ"}) {
+                    final SearchQuery q = SearchQuery.searchJpEdict(word, matcher);
+                    final Set<String> expected = Utils.filteredSearch(DictTypeEnum.Edict, q);
+                    final Set<String> result = new HashSet<String>();
+                    for (final DictEntry e : s.search(q, 100000)) {
+                        assertTrue(e.toString(), DictTypeEnum.Edict.matches(e, q));
+                        result.add(e.toExternal());
+                    }
+                    assertTrue(word + " " + matcher, result.containsAll(expected));
+                    assertEquals(word + " " + matcher, !expected.isEmpty(), !result.isEmpty());
+                }
+            }
+            assertFalse(s.search(SearchQuery.searchJpEdict("はは", MatcherEnum.Exact)).isEmpty());
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * A romaji query matches the kana-normalized fields with a single term
+     * per token. It finds all entries found by the katakana/hiragana pair,
+     * plus the entries written with the long vowel mark.
+     */
+    @Test
+    public void romajiSearchUsesKanaNormalizedFields() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final MatcherEnum matcher : MatcherEnum.values()) {
+                for (final String word : new String[]{"haha", "kyou", "oya AND haha"}) {
+                    final SearchQuery q = SearchQuery.searchJpRomaji(word, RomanizationEnum.Hepburn, matcher);
+                    final SearchQuery normalized = new SearchQuery(q);
+                    normalized.query = new String[]{KanjiUtils.normalizeKana(q.query[0])};
+                    final Set<String> result = new HashSet<String>();
+                    for (final DictEntry e : s.search(q, 100000)) {
+                        final DictEntry n = new DictEntry(e.kanji == null ? null : KanjiUtils.normalizeKana(e.kanji), KanjiUtils.normalizeKana(e.reading), e.english);
+                        assertTrue(e.toString(), DictTypeEnum.Edict.matches(n, normalized));
+                        result.add(e.toExternal());
+                    }
+                    final Set<String> expected = Utils.filteredSearch(DictTypeEnum.Edict, q);
+                    assertTrue(word + " " + matcher, result.containsAll(expected));
+                    assertEquals(word + " " + matcher, !expected.isEmpty(), !result.isEmpty());
+                }
+            }
+            final List<DictEntry> result = s.search(SearchQuery.searchJpRomaji("aagairu", RomanizationEnum.Hepburn, MatcherEnum.Exact), 100);
+            assertEquals(1, result.size());
+            assertEquals("アーガイル", result.get(0).reading);
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * The exact romaji lookup finds the same entries as the lookup of the
+     * converted kana, regardless of the romanization used. The spellings
+     * the conversion does not handle (shutchou, kan'i) are found as well.
+     */
+    @Test
+    public void romajiKeyLookupEqualsKanaLookup() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final String[][] words = {{"haha", "haha"}, {"shinbun", "sinbun"}, {"jishin", "zisin"}, {"chotto", "tyotto"},
+                {"shutchou", "syuttyou"}, {"gakkou", "gakkou"}, {"konnichiha", "konnitiha"}, {"haha AND oya", "haha AND oya"}};
+            for (final String[] word : words) {
+                final SearchQuery q = SearchQuery.searchJpRomaji(word[1], RomanizationEnum.NihonShiki, MatcherEnum.Exact);
+                final SearchQuery kana = new SearchQuery(q);
+                kana.romaji = null;
+                final List<String> expected = toExternal(s.search(kana, 100000));
+                assertEquals(word[1], expected, toExternal(s.search(q, 100000)));
+                assertEquals(word[0], expected, toExternal(s.search(SearchQuery.searchJpRomaji(word[0], RomanizationEnum.Hepburn, MatcherEnum.Exact), 100000)));
+                assertEquals(word[0], !word[0].contains("AND"), !expected.isEmpty());
+            }
+            // the conversion cannot produce the syllabic n before a vowel
+            final List<String> kani = toExternal(s.search(SearchQuery.searchJpEdict("かんい", MatcherEnum.Exact), 100));
+            assertFalse(kani.isEmpty());
+            assertEquals(kani, toExternal(s.search(SearchQuery.searchJpRomaji("kan'i", RomanizationEnum.Hepburn, MatcherEnum.Exact), 100)));
+            assertEquals(kani, toExternal(s.search(SearchQuery.searchJpRomaji("kanxi", RomanizationEnum.NihonShiki, MatcherEnum.Exact), 100)));
+            assertEquals(toExternal(s.search(SearchQuery.searchJpRomaji("shinbun", RomanizationEnum.Hepburn, MatcherEnum.Exact), 100)),
+                    toExternal(s.search(SearchQuery.searchJpRomaji("shimbun", RomanizationEnum.Hepburn, MatcherEnum.Exact), 100)));
+        } finally {
+            s.close();
+        }
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>(entries.size());
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        return result;
+    }
+
+    /**
+     * The bigram field matches exactly the substrings found by the filtered
+     * search.
+     */
+    @Test
+    public void bigramSubstringSearchEqualsFilteredSearch() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final String word : new String[]{"はは", "母親", "きょう", "ょう", "ははお AND おや", "う"}) {
+                final SearchQuery q = SearchQuery.searchJpEdict(word, MatcherEnum.Substring);
+                assertEquals(word, word.length() > 1, DictTypeEnum.Edict.isExact(q, Collections.singleton("jp-bigram")));
+                final Set<String> result = new HashSet<String>();
+                for (final DictEntry e : s.search(q, 100000)) {
+                    result.add(e.toExternal());
+                }
+                final Set<String> expected = Utils.filteredSearch(DictTypeEnum.Edict, q);
+                assertFalse(word, expected.isEmpty());
+                assertEquals(word, expected, result);
+            }
+            // the analyzer does not split the fullwidth latin letters, the
+            // bigrams do
+            final SearchQuery q = SearchQuery.searchJpEdict("ＣＤ", MatcherEnum.Substring);
+            final List<DictEntry> result = s.search(q, 100000);
+            assertFalse(result.isEmpty());
+            for (final DictEntry e : result) {
+                assertTrue(e.toString(), DictTypeEnum.Edict.matches(e, q));
+            }
+        } finally {
+            s.close();
+        }
+    }
+
     @Override
     protected String getDefaultFieldName() {
         return "contents";
@@ -0,0 +1,119 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchCursor;
+import sk.baka.aedict.dict.SearchQuery;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SearchCursor} class.
+ * @author Martin Vysny
+ */
+public class SearchCursorTest {
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Test
+    public void cursorReturnsSameEntriesAsSearch() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            for (final SearchQuery q : new SearchQuery[]{SearchQuery.searchJpEdict("はは", MatcherEnum.Substring), SearchQuery.searchJpEdict("母", MatcherEnum.StartsWith),
+                        SearchQuery.searchEnEdict("mother", true), SearchQuery.searchEnEdict("mother", false)}) {
+                final List<String> expected = toExternal(s.search(q, 100000));
+                final SearchCursor c = s.searchCursor(q);
+                final List<String> result = toExternal(c.next(100000));
+                assertNull(c.next());
+                c.close();
+                assertEquals(q.prettyPrintQuery(), expected, result);
+                assertFalse(q.prettyPrintQuery(), result.isEmpty());
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void cursorReturnsCommonEntriesFirst() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final SearchCursor c = s.searchCursor(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring));
+            boolean common = true;
+            for (DictEntry e = c.next(); e != null; e = c.next()) {
+                assertTrue(common || !e.isCommon);
+                common = e.isCommon;
+            }
+            c.close();
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void firstNEntries() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, false);
+        try {
+            final SearchCursor c = s.searchCursor(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring));
+            assertEquals(5, c.next(5).size());
+            assertEquals(3, c.next(3).size());
+            c.close();
+            // closed cursor returns nothing
+            assertNull(c.next());
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void leasedCursorKeepsIndexOpen() throws Exception {
+        final LuceneSearchRegistry registry = Utils.newRegistry();
+        final Dictionary edict = new Dictionary(DictTypeEnum.Edict, null);
+        final LuceneSearch s = registry.open(edict, false);
+        final SearchCursor c = s.searchCursor(SearchQuery.searchEnEdict("mother", false));
+        s.close();
+        registry.closeIdle(true);
+        assertTrue(registry.isOpened(edict));
+        assertNotNull(c.next());
+        c.close();
+        registry.closeIdle(true);
+        assertFalse(registry.isOpened(edict));
+    }
+
+    private static List<String> toExternal(final List<DictEntry> entries) {
+        final List<String> result = new ArrayList<String>();
+        for (final DictEntry e : entries) {
+            result.add(e.toExternal());
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
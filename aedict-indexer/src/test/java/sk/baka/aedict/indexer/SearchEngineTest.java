@@ -0,0 +1,162 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.DictionaryVersions;
+import sk.baka.aedict.dict.KanjidicEntry;
+import sk.baka.aedict.dict.KanjidicLookup;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchBackendEnum;
+import sk.baka.aedict.dict.SearchEngine;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SearchEngine} class.
+ * @author Martin Vysny
+ */
+public class SearchEngineTest {
+
+    private static final Dictionary EDICT = new Dictionary(DictTypeEnum.Edict, null);
+    private static final Dictionary KANJIDIC = new Dictionary(DictTypeEnum.Kanjidic, null);
+    /**
+     * A copy of the KANJIDIC index, the EDICT index occupies the default location.
+     */
+    private static final File KANJIDIC_INDEX = new File("target/index-kanjidic");
+    private LuceneSearchRegistry registry;
+    private SearchEngine engine;
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index("-k", "kanjidic.gz", FileTypeEnum.Kanjidic);
+        FileUtils.deleteDirectory(KANJIDIC_INDEX);
+        FileUtils.copyDirectory(new File(Main.LUCENE_INDEX), KANJIDIC_INDEX);
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Before
+    public void createEngine() {
+        registry = Utils.newRegistry(Collections.singletonMap(DictTypeEnum.Kanjidic, KANJIDIC_INDEX));
+        engine = new SearchEngine(registry, false);
+    }
+
+    @Test
+    public void queriesAreRoutedToInstalledBackends() throws Exception {
+        final SearchQuery exact = SearchQuery.searchJpEdict("はは", MatcherEnum.Exact);
+        final SearchQuery kanji = SearchQuery.kanjiSearch('読', null, null);
+        assertEquals(SearchBackendEnum.Lucene, engine.route(EDICT, exact));
+        assertEquals(SearchBackendEnum.Lucene, engine.search(exact, 100).backend);
+        assertEquals(SearchBackendEnum.Lucene, engine.search(kanji, 100).backend);
+        assertEquals(SearchBackendEnum.Headwords, engine.install(EDICT));
+        assertEquals(SearchBackendEnum.Kanjidic, engine.install(KANJIDIC));
+        assertEquals(SearchBackendEnum.Headwords, engine.search(exact, 100).backend);
+        assertEquals(SearchBackendEnum.Headwords, engine.search(SearchQuery.searchJpRomaji("haha", RomanizationEnum.Hepburn, MatcherEnum.StartsWith), 100).backend);
+        assertEquals(SearchBackendEnum.Lucene, engine.search(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring), 100).backend);
+        assertEquals(SearchBackendEnum.Lucene, engine.search(SearchQuery.searchEnEdict("mother", true), 100).backend);
+        // the headword index does not support the suffix lookups
+        assertEquals(SearchBackendEnum.Lucene, engine.search(SearchQuery.searchJpEdict("はは", MatcherEnum.EndsWith), 100).backend);
+        final SearchEngine.Result r = engine.search(kanji, 100);
+        assertEquals(SearchBackendEnum.Kanjidic, r.backend);
+        assertEquals(1, r.entries.size());
+        assertEquals("読", r.entries.get(0).kanji);
+        assertEquals(SearchBackendEnum.Lucene, engine.search(SearchQuery.kanjiSearch('読', 14, 1), 100).backend);
+        engine.uninstall(EDICT);
+        assertEquals(SearchBackendEnum.Lucene, engine.search(exact, 100).backend);
+    }
+
+    /**
+     * The structures loaded from the dictionary files must not be served once
+     * the registry invalidates the dictionary.
+     */
+    @Test
+    public void invalidationDropsInstalledBackends() throws Exception {
+        final SearchQuery exact = SearchQuery.searchJpEdict("はは", MatcherEnum.Exact);
+        final SearchQuery kanji = SearchQuery.kanjiSearch('読', null, null);
+        engine.install(EDICT);
+        engine.install(KANJIDIC);
+        assertEquals(SearchBackendEnum.Headwords, engine.route(EDICT, exact));
+        assertEquals(SearchBackendEnum.Kanjidic, engine.route(KANJIDIC, kanji));
+        registry.invalidate(EDICT);
+        assertEquals(SearchBackendEnum.Lucene, engine.route(EDICT, exact));
+        assertEquals(SearchBackendEnum.Kanjidic, engine.route(KANJIDIC, kanji));
+        assertEquals(SearchBackendEnum.Headwords, engine.install(EDICT));
+        assertEquals(SearchBackendEnum.Headwords, engine.route(EDICT, exact));
+        // an unchanged version keeps the structures
+        final DictionaryVersions dv = new DictionaryVersions();
+        dv.versions.put(KANJIDIC, "20100101");
+        registry.updateVersions(dv);
+        registry.updateVersions(dv);
+        assertEquals(SearchBackendEnum.Kanjidic, engine.route(KANJIDIC, kanji));
+        dv.versions.put(KANJIDIC, "20110101");
+        registry.updateVersions(dv);
+        assertEquals(SearchBackendEnum.Lucene, engine.route(KANJIDIC, kanji));
+        assertEquals(SearchBackendEnum.Headwords, engine.route(EDICT, exact));
+        engine.install(KANJIDIC);
+        registry.invalidateAll();
+        assertEquals(SearchBackendEnum.Lucene, engine.route(EDICT, exact));
+        assertEquals(SearchBackendEnum.Lucene, engine.route(KANJIDIC, kanji));
+        assertEquals(SearchBackendEnum.Lucene, engine.search(kanji, 100).backend);
+    }
+
+    /**
+     * Every query answered by an auxiliary structure is verified against the
+     * Lucene index.
+     */
+    @Test
+    public void crossCheckFindsNoDifferences() throws Exception {
+        engine.install(EDICT);
+        engine.install(KANJIDIC);
+        engine.setCrossCheck(true);
+        int served = 0;
+        for (final MatcherEnum matcher : new MatcherEnum[]{MatcherEnum.Exact, MatcherEnum.StartsWith}) {
+            for (final String word : new String[]{"はは", "母", "う", "きょう", "ハハ"}) {
+                served += engine.search(SearchQuery.searchJpEdict(word, matcher), 100).backend == SearchBackendEnum.Headwords ? 1 : 0;
+            }
+            for (final String word : new String[]{"haha", "shinbun", "oya AND haha"}) {
+                served += engine.search(SearchQuery.searchJpRomaji(word, RomanizationEnum.Hepburn, matcher), 100).backend == SearchBackendEnum.Headwords ? 1 : 0;
+            }
+        }
+        assertEquals(16, served);
+        for (final char kanji : "読慕母日本語".toCharArray()) {
+            final SearchEngine.Result r = engine.search(SearchQuery.kanjiSearch(kanji, null, null), 100);
+            assertEquals(SearchBackendEnum.Kanjidic, r.backend);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void crossCheckDetectsDifference() throws Exception {
+        final List<DictEntry> bogus = Collections.<DictEntry>singletonList(new KanjidicEntry("読", "よ.む", "bogus", 1, 1, "1-1-1", null));
+        engine.install(KANJIDIC, new KanjidicLookup(bogus));
+        final SearchQuery q = SearchQuery.kanjiSearch('読', null, null);
+        assertEquals(bogus, engine.search(q, 100).entries);
+        engine.setCrossCheck(true);
+        engine.search(q, 100);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+Aedict - an EDICT browser for Android
+Copyright (C) 2009 Martin Vysny
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sk.baka.aedict.indexer;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.MatcherEnum;
+import sk.baka.aedict.dict.SearchCursor;
+import sk.baka.aedict.dict.SearchListener;
+import sk.baka.aedict.dict.SearchMetrics;
+import sk.baka.aedict.dict.SearchMetricsRecorder;
+import sk.baka.aedict.dict.SearchPhaseEnum;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.dict.SearchSourceEnum;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SearchMetricsRecorder} class.
+ * @author Martin Vysny
+ */
+public class SearchMetricsTest {
+
+    @BeforeClass
+    public static void index() throws Exception {
+        Utils.index(null, "edict.gz", FileTypeEnum.Edict);
+    }
+
+    @Test
+    public void searchesAreMeasuredPerMatcher() throws Exception {
+        final SearchMetricsRecorder recorder = new SearchMetricsRecorder();
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        s.setListener(recorder);
+        try {
+            int kept = 0;
+            for (int i = 0; i < 3; i++) {
+                kept += s.search(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring), 100).size();
+            }
+            s.search(SearchQuery.searchEnEdict("mother", true), 100);
+            final SearchMetricsRecorder.Stats stats = recorder.getStats(DictTypeEnum.Edict, MatcherEnum.Substring);
+            assertEquals(3, stats.getSearches());
+            assertEquals(kept, stats.getHitsKept());
+            assertTrue(stats.getHitsFetched() >= stats.getHitsKept());
+            assertTrue(stats.getStoredBytes() > 0);
+            assertEquals(3, stats.getHistogram(SearchPhaseEnum.Total).getCount());
+            assertTrue(stats.getHistogram(SearchPhaseEnum.Total).getPercentile(99) > 0);
+            assertTrue(stats.getHistogram(SearchPhaseEnum.Total).getMax() >= stats.getHistogram(SearchPhaseEnum.Load).getMax());
+            assertEquals(1, recorder.getStats(DictTypeEnum.Edict, MatcherEnum.Exact).getSearches());
+            assertNull(recorder.getStats(DictTypeEnum.Edict, MatcherEnum.StartsWith));
+            assertTrue(recorder.toString(), recorder.toString().contains("p99"));
+            assertEquals(4, recorder.getStats(SearchSourceEnum.Index).getSearches());
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void listenerIsPerInstance() throws Exception {
+        final SearchMetricsRecorder recorder = new SearchMetricsRecorder();
+        final LuceneSearch measured = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        final LuceneSearch other = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        try {
+            measured.setListener(recorder);
+            other.search(SearchQuery.searchEnEdict("mother", true), 100);
+            assertNull(recorder.getStats(SearchSourceEnum.Index));
+            measured.search(SearchQuery.searchEnEdict("mother", true), 100);
+            assertEquals(1, recorder.getStats(SearchSourceEnum.Index).getSearches());
+        } finally {
+            measured.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void cacheHitsBatchesAndCursorsAreMeasured() throws Exception {
+        final LuceneSearchRegistry registry = Utils.newRegistry();
+        final SearchMetricsRecorder recorder = new SearchMetricsRecorder();
+        registry.setListener(recorder);
+        final LuceneSearch s = registry.open(new Dictionary(DictTypeEnum.Edict, null), true);
+        try {
+            final SearchQuery mother = SearchQuery.searchEnEdict("mother", true);
+            final int found = s.search(mother, 100).size();
+            s.search(mother, 100);
+            final SearchMetricsRecorder.Stats cache = recorder.getStats(SearchSourceEnum.Cache);
+            assertEquals(1, cache.getSearches());
+            assertEquals(found, cache.getHitsKept());
+            // the cached query is a cache hit, the other one is searched
+            final List<List<DictEntry>> batch = s.searchBatch(Arrays.asList(mother, SearchQuery.searchJpEdict("はは", MatcherEnum.Substring)), 100);
+            assertEquals(2, cache.getSearches());
+            final SearchMetricsRecorder.Stats batches = recorder.getStats(SearchSourceEnum.Batch);
+            assertEquals(1, batches.getSearches());
+            assertEquals(batch.get(1).size(), batches.getHitsKept());
+            final SearchCursor c = s.searchCursor(SearchQuery.searchJpEdict("はは", MatcherEnum.Substring));
+            final int streamed = c.next(5).size();
+            assertNull(recorder.getStats(SearchSourceEnum.Cursor));
+            c.close();
+            final SearchMetricsRecorder.Stats cursors = recorder.getStats(SearchSourceEnum.Cursor);
+            assertEquals(1, cursors.getSearches());
+            assertEquals(streamed, cursors.getHitsKept());
+            assertTrue(cursors.getStoredBytes() > 0);
+            // only the index searches are aggregated per matcher
+            assertEquals(1, recorder.getStats(DictTypeEnum.Edict, MatcherEnum.Exact).getSearches());
+            assertNull(recorder.getStats(DictTypeEnum.Edict, MatcherEnum.Substring));
+        } finally {
+            s.close();
+            registry.closeIdle(true);
+        }
+    }
+
+    @Test
+    public void phasesAddUpToTotal() throws Exception {
+        final SearchMetrics[] last = new SearchMetrics[1];
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Edict, Main.LUCENE_INDEX, true);
+        s.setListener(new SearchListener() {
+
+            public void searchPerformed(SearchMetrics metrics) {
+                last[0] = metrics;
+            }
+        });
+        final List<DictEntry> result;
+        try {
+            result = s.search(SearchQuery.searchEnEdict("mother", false), 100000);
+            assertEquals(result.size(), last[0].hitsKept);
+            assertPhasesAddUp(last[0]);
+            final SearchCursor c = s.searchCursor(SearchQuery.searchEnEdict("mother", false));
+            assertEquals(result.size(), c.next(100000).size());
+            assertNull(c.next());
+            assertEquals(SearchSourceEnum.Cursor, last[0].source);
+            assertEquals(result.size(), last[0].hitsKept);
+            assertPhasesAddUp(last[0]);
+        } finally {
+            s.close();
+        }
+    }
+
+    private static void assertPhasesAddUp(final SearchMetrics m) {
+        assertNotNull(m);
+        long sum = 0;
+        for (final SearchPhaseEnum phase : SearchPhaseEnum.values()) {
+            assertTrue(phase + ": " + m, m.getNanos(phase) >= 0);
+            if (phase != SearchPhaseEnum.Total) {
+                sum += m.getNanos(phase);
+            }
+        }
+        assertEquals(m.getNanos(SearchPhaseEnum.Total), sum);
+    }
+}
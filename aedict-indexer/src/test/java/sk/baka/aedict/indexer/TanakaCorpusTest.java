@@ -17,9 +17,16 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package sk.baka.aedict.indexer;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.LuceneSearch;
+import sk.baka.aedict.dict.SearchQuery;
+import sk.baka.aedict.kanji.RomanizationEnum;
 import static org.junit.Assert.*;
 
 /**
@@ -92,4 +99,23 @@ public class TanakaCorpusTest extends AbstractLuceneSearchTest {
         assertEquals("※基本的な禁止事項（誹謗・中傷の禁止等）は「はじめにお読み下さい」に記載してあります。必ずお読みください。", s.get(0));
         assertEquals(1676, s.size());
     }
+
+    @Test
+    public void bigramSubstringSearchEqualsFilteredSearch() throws Exception {
+        final LuceneSearch s = new LuceneSearch(DictTypeEnum.Tanaka, Main.LUCENE_INDEX, false);
+        try {
+            for (final String word : new String[]{"きれい", "母", "生徒会長", "かっこよく AND 美形"}) {
+                final SearchQuery q = SearchQuery.searchTanaka(DictTypeEnum.Tanaka, word, true, RomanizationEnum.Hepburn, null);
+                final Set<String> result = new HashSet<String>();
+                for (final DictEntry e : s.search(q, 100000)) {
+                    result.add(e.toExternal());
+                }
+                final Set<String> expected = Utils.filteredSearch(DictTypeEnum.Tanaka, q);
+                assertFalse(word, expected.isEmpty());
+                assertEquals(word, expected, result);
+            }
+        } finally {
+            s.close();
+        }
+    }
 }
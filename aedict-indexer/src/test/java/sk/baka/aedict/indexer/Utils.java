@@ -21,8 +21,21 @@ import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.FSDirectory;
+import sk.baka.aedict.dict.DictEntry;
+import sk.baka.aedict.dict.DictTypeEnum;
+import sk.baka.aedict.dict.Dictionary;
+import sk.baka.aedict.dict.LuceneSearchRegistry;
+import sk.baka.aedict.dict.SearchQuery;
 import static org.junit.Assert.*;
 
 /**
@@ -52,4 +65,56 @@ public class Utils {
         targetFile.delete();
         FileUtils.moveFile(new File(fileType.getTargetFileName(null)), targetFile);
     }
+
+    /**
+     * Creates a registry which opens the index produced by the last
+     * {@link #index(String, String, FileTypeEnum)} for all dictionaries.
+     * @return the registry, not null.
+     */
+    public static LuceneSearchRegistry newRegistry() {
+        return newRegistry(Collections.<DictTypeEnum, File>emptyMap());
+    }
+
+    /**
+     * Creates a registry which opens given index locations.
+     * @param indices maps the dictionary type to the index location. The
+     * dictionaries of other types use the index produced by the last
+     * {@link #index(String, String, FileTypeEnum)}.
+     * @return the registry, not null.
+     */
+    public static LuceneSearchRegistry newRegistry(final Map<DictTypeEnum, File> indices) {
+        return new LuceneSearchRegistry() {
+
+            @Override
+            protected File getIndexLocation(Dictionary dictionary) {
+                final File location = indices.get(dictionary.dte);
+                return location != null ? location : new File(Main.LUCENE_INDEX);
+            }
+        };
+    }
+
+    /**
+     * Performs the search the old way: the queries over the basic analyzed
+     * fields are filtered by {@link DictTypeEnum#matches(DictEntry, SearchQuery)}.
+     * @param dictType the dictionary type
+     * @param q the query
+     * @return external forms of all matching entries.
+     */
+    public static Set<String> filteredSearch(final DictTypeEnum dictType, final SearchQuery q) throws Exception {
+        final IndexSearcher searcher = new IndexSearcher(FSDirectory.open(new File(Main.LUCENE_INDEX)), true);
+        try {
+            final Set<String> result = new HashSet<String>();
+            for (final Query query : dictType.getLuceneQuery(q)) {
+                for (final ScoreDoc sd : searcher.search(query, 1000000).scoreDocs) {
+                    final DictEntry e = dictType.tryGetEntry(searcher.doc(sd.doc), q);
+                    if (e != null) {
+                        result.add(e.toExternal());
+                    }
+                }
+            }
+            return result;
+        } finally {
+            searcher.close();
+        }
+    }
 }